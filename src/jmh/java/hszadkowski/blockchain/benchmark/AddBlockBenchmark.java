@@ -0,0 +1,88 @@
+package hszadkowski.blockchain.benchmark;
+
+import hszadkowski.blockchain.Block;
+import hszadkowski.blockchain.Blockchain;
+import hszadkowski.blockchain.Client;
+import hszadkowski.blockchain.Hash256;
+import hszadkowski.blockchain.HashingEngine;
+import hszadkowski.blockchain.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Accepting one block into a fresh chain, with signatures that were never seen before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AddBlockBenchmark {
+    // Every sender starts with this much and pays one coin per transaction
+    private static final int TRANSACTIONS_PER_SENDER = 100;
+
+    @Param({"1", "10", "100", "1000"})
+    private int blockSize;
+
+    private ExecutorService executor;
+    private Block block;
+    private Blockchain blockchain;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(new Transaction("BLOCKCHAIN", "miner1", 100));
+        Client sender = null;
+        for (int i = 1; i < blockSize; i++) {
+            if ((i - 1) % TRANSACTIONS_PER_SENDER == 0) {
+                sender = new Client("sender" + i);
+            }
+            transactions.add(sender.createTransaction(sender.getName(), "Bob", 1));
+        }
+        // A fresh chain accepts any hash, so nonce 0 is a valid proof of work
+        Hash256 hash = HashingEngine.hashHeader(HashingEngine.headerPrefix(1, Hash256.ZERO, transactions, 0L, 0L), 0);
+        block = new Block(1, 0L, Hash256.ZERO, hash, 0, 3, transactions, "miner1");
+
+        Blockchain probe = new Blockchain(Integer.MAX_VALUE, executor);
+        probe.addBlock(block);
+        if (probe.getNextBlockId() != 2) {
+            throw new IllegalStateException("The benchmark block of " + blockSize + " transactions is rejected");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        blockchain = new Blockchain(Integer.MAX_VALUE, executor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Blockchain addBlock() {
+        blockchain.addBlock(block);
+        return blockchain;
+    }
+}
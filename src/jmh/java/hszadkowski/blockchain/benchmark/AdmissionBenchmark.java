@@ -0,0 +1,82 @@
+package hszadkowski.blockchain.benchmark;
+
+import hszadkowski.blockchain.AdmissionResult;
+import hszadkowski.blockchain.Blockchain;
+import hszadkowski.blockchain.Client;
+import hszadkowski.blockchain.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Admitting a batch of freshly signed transactions into an empty mempool, one by one
+ * versus through the batch pipeline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AdmissionBenchmark {
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private ExecutorService executor;
+    private List<Transaction> transactions;
+    private Blockchain blockchain;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        Client alice = new Client("Alice");
+        transactions = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            transactions.add(alice.createTransaction("Alice", "Bob", 0));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        blockchain = new Blockchain(Integer.MAX_VALUE, executor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Blockchain oneByOne() {
+        for (Transaction tx : transactions) {
+            blockchain.addTransaction(tx);
+        }
+        return blockchain;
+    }
+
+    @Benchmark
+    public List<CompletableFuture<AdmissionResult>> batch() {
+        List<CompletableFuture<AdmissionResult>> results = blockchain.addTransactions(transactions);
+        results.get(results.size() - 1).join();
+        return results;
+    }
+}
@@ -0,0 +1,64 @@
+package hszadkowski.blockchain.benchmark;
+
+import hszadkowski.blockchain.Block;
+import hszadkowski.blockchain.ChainValidator;
+import hszadkowski.blockchain.Hash256;
+import hszadkowski.blockchain.HashingEngine;
+import hszadkowski.blockchain.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end validation of chains of different heights, e.g. at startup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChainValidationBenchmark {
+    private static final long INTERVAL = 1_000L;
+
+    @Param({"1000", "100000"})
+    private int height;
+
+    private List<Block> blocks;
+    private ChainValidator validator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validator = new ChainValidator(ForkJoinPool.commonPool(), INTERVAL);
+        blocks = new ArrayList<>(height);
+        Hash256 previous = Hash256.ZERO;
+        // Every block takes exactly one interval, so the target stays at the maximum and nonce 0 meets it
+        for (int i = 1; i <= height; i++) {
+            String miner = "miner" + (i % 10);
+            List<Transaction> txs = List.of(new Transaction("BLOCKCHAIN", miner, 100));
+            Hash256 hash = HashingEngine.hashHeader(HashingEngine.headerPrefix(i, previous, txs, i * INTERVAL, 0L), 0);
+            blocks.add(new Block(i, i * INTERVAL, previous, hash, 0, INTERVAL, txs, miner));
+            previous = hash;
+        }
+    }
+
+    @Benchmark
+    public ChainValidator.Result validate() {
+        return validator.validate(blocks);
+    }
+}
@@ -0,0 +1,74 @@
+package hszadkowski.blockchain.benchmark;
+
+import hszadkowski.blockchain.Hash256;
+import hszadkowski.blockchain.HashingEngine;
+import hszadkowski.blockchain.StringUtil;
+import hszadkowski.blockchain.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Block hashing: the generic String helper, the miner's per-nonce step and one multi-lane pass,
+ * which covers {@link HashingEngine#getLanes()} nonces (1 when the vector backend is off).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class HashingBenchmark {
+
+    @Param({"1", "100", "10000"})
+    private int transactions;
+
+    private String blockData;
+    private HashingEngine engine;
+    private int nonce;
+    private int lanes;
+
+    @Setup
+    public void setUp() {
+        List<Transaction> txs = new ArrayList<>();
+        txs.add(new Transaction("BLOCKCHAIN", "miner1", 100));
+        for (int i = 1; i < transactions; i++) {
+            txs.add(new Transaction("Alice", "Bob", i, i, new byte[128], null));
+        }
+        String previousHash = StringUtil.applySha256("previous");
+        blockData = 1 + previousHash + 42 + txs;
+        engine = HashingEngine.forCurrentThread();
+        engine.prepare(HashingEngine.headerPrefix(1, Hash256.fromHex(previousHash), txs, 0L, 0L));
+        lanes = engine.getLanes();
+    }
+
+    @Benchmark
+    public String applySha256() {
+        return StringUtil.applySha256(blockData);
+    }
+
+    @Benchmark
+    public boolean minerNonceAttempt() {
+        return engine.tryNonce(nonce++, Hash256.ZERO);
+    }
+
+    @Benchmark
+    public int minerLanePass() {
+        int first = nonce;
+        nonce += lanes;
+        return engine.tryNonces(first, lanes, Hash256.ZERO);
+    }
+}
@@ -0,0 +1,70 @@
+package hszadkowski.blockchain.benchmark;
+
+import hszadkowski.blockchain.Block;
+import hszadkowski.blockchain.Blockchain;
+import hszadkowski.blockchain.Hash256;
+import hszadkowski.blockchain.HashingEngine;
+import hszadkowski.blockchain.Transaction;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Balance lookups against chains of different heights.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LedgerBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int height;
+
+    private ExecutorService executor;
+    private Blockchain blockchain;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        blockchain = new Blockchain(Integer.MAX_VALUE, executor);
+        // Blocks exactly one interval apart keep the target at the maximum, so nonce 0 meets it
+        long interval = blockchain.getBlockIntervalMillis();
+        for (int i = 1; i <= height; i++) {
+            String miner = "miner" + (i % 10);
+            List<Transaction> txs = List.of(new Transaction("BLOCKCHAIN", miner, 100),
+                    new Transaction(miner, "Alice", 1, i, null, null));
+            Hash256 previous = blockchain.getLastHash();
+            Hash256 hash = HashingEngine.hashHeader(HashingEngine.headerPrefix(i, previous, txs, i * interval, 0L), 0);
+            blockchain.addBlock(new Block(i, i * interval, previous, hash, 0, 3, txs, miner));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long getBalance() {
+        return blockchain.getBalance("Alice");
+    }
+}
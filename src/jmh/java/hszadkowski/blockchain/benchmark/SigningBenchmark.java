@@ -0,0 +1,59 @@
+package hszadkowski.blockchain.benchmark;
+
+import hszadkowski.blockchain.Client;
+import hszadkowski.blockchain.SignatureScheme;
+import hszadkowski.blockchain.Transaction;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Key generation, creating (signing) and verifying transactions for each signature scheme.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SigningBenchmark {
+
+    @Param({"RSA", "ED25519", "ECDSA_P256"})
+    private SignatureScheme scheme;
+
+    private Client client;
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() throws Exception {
+        client = new Client("Alice", scheme);
+        transaction = client.createTransaction("Alice", "Bob", 10);
+    }
+
+    @Benchmark
+    public KeyPair generateKeyPair() throws Exception {
+        return scheme.generateKeyPair();
+    }
+
+    @Benchmark
+    public Transaction createTransaction() throws Exception {
+        return client.createTransaction("Alice", "Bob", 10);
+    }
+
+    @Benchmark
+    public boolean isSignatureValid() {
+        return transaction.isSignatureValid();
+    }
+}
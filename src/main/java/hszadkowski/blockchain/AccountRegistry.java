@@ -0,0 +1,82 @@
+package hszadkowski.blockchain;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every account address a dense int id, so the {@link Ledger} and the {@link Mempool}
+ * store and compare ints and keep per-account state in arrays indexed by id. Ids are only
+ * meaningful within one process: whatever goes to disk keeps the addresses themselves.
+ * <p>
+ * Ids are never released, so an address is registered only once a transaction using it is
+ * admitted to the mempool or its block passes proof of work: rejected submissions leave no
+ * trace, and the registry is bounded by the accounts that took part in valid transactions.
+ * Thread-safe; looking up a known address does not lock.
+ */
+final class AccountRegistry {
+    static final int UNKNOWN = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final AccountRegistry SHARED = new AccountRegistry();
+    // Registered first, so the award sender is always id 0
+    static final int AWARD_ID = SHARED.idOf(Ledger.AWARD_SENDER);
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[INITIAL_CAPACITY];
+    private volatile int size;
+
+    /**
+     * The registry admitted {@link Transaction}s register their addresses in.
+     */
+    static AccountRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return the id of {@code address}, registering it if it is new
+     */
+    int idOf(final String address) {
+        Integer id = ids.get(address);
+        return id != null ? id : register(address);
+    }
+
+    private synchronized int register(final String address) {
+        Integer id = ids.get(address);
+        if (id != null) {
+            return id;
+        }
+        int next = size;
+        String[] current = names;
+        if (next == current.length) {
+            current = Arrays.copyOf(current, next * 2);
+        }
+        current[next] = address;
+        names = current;
+        size = next + 1;
+        // Published last: whoever sees the id also sees its name
+        ids.put(address, next);
+        return next;
+    }
+
+    /**
+     * @return the id of {@code address}, or {@link #UNKNOWN} if no admitted transaction has used it
+     */
+    int find(final String address) {
+        return ids.getOrDefault(address, UNKNOWN);
+    }
+
+    String nameOf(final int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("No account with id " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * How many addresses are registered; every id is below it.
+     */
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,11 @@
+package hszadkowski.blockchain;
+
+/**
+ * Outcome of submitting a transaction to the mempool.
+ */
+public enum AdmissionResult {
+    ACCEPTED,
+    INVALID_SIGNATURE,
+    INSUFFICIENT_FUNDS,
+    DUPLICATE
+}
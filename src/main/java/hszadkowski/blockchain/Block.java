@@ -1,41 +1,58 @@
 package hszadkowski.blockchain;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 public final class Block {
-    private final int id;
-    private final long timestamp;
-    private final String previousHash;
-    private final String hash;
-    private final int magicNumber;
-    private final long generationTime; // in seconds
+    private static final double MILLIS_PER_SECOND = TimeUnit.SECONDS.toMillis(1);
+    private final BlockHeader header;
+    private final long generationTime; // in milliseconds
     private final List<Transaction> transactions;
     private final String minerName;
+    private volatile byte[] transactionRoot;
+    private volatile String rendered;
 
     public Block(final int id,
                  final long timestamp,
-                 final String previousHash,
-                 final String hash,
+                 final Hash256 previousHash,
+                 final Hash256 hash,
                  final int magicNumber,
                  final long generationTime,
                  final List<Transaction> transactions,
                  final String minerName) {
-        this.id = id;
-        this.timestamp = timestamp;
-        this.previousHash = previousHash;
-        this.hash = hash;
-        this.magicNumber = magicNumber;
+        this(new BlockHeader(id, previousHash, MerkleTree.of(transactions).getRoot(), timestamp, 0L, magicNumber, hash),
+                generationTime, transactions, minerName);
+    }
+
+    /**
+     * @param header the mined header; its Merkle root is trusted here and only compared with
+     *               the transactions when the block is checked, see {@link #commitsToTransactions()}
+     */
+    public Block(final BlockHeader header,
+                 final long generationTime,
+                 final List<Transaction> transactions,
+                 final String minerName) {
+        this.header = header;
         this.generationTime = generationTime;
         this.transactions = transactions;
         this.minerName = minerName;
     }
 
-    public String getPreviousHash() {
-        return previousHash;
+    public long getTimestamp() {
+        return header.getTimestamp();
+    }
+
+    public String getMinerName() {
+        return minerName;
+    }
+
+    public Hash256 getPreviousHash() {
+        return header.getPreviousHash();
     }
 
-    public String getHash() {
-        return hash;
+    public Hash256 getHash() {
+        return header.getHash();
     }
 
     public long getGenerationTime() {
@@ -46,19 +63,63 @@ public final class Block {
         return transactions;
     }
 
-    public int getId() {return id;}
+    public int getId() {return header.getId();}
 
+    public int getMagicNumber() {
+        return header.getNonce();
+    }
+
+    public long getExtraNonce() {
+        return header.getExtraNonce();
+    }
+
+    /**
+     * The Merkle root the header commits to.
+     */
+    public byte[] getMerkleRoot() {
+        return header.getMerkleRoot();
+    }
+
+    public BlockHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Whether the header's Merkle root is that of the transactions, so the proof of work
+     * covers them. The tree is built on first use.
+     */
+    boolean commitsToTransactions() {
+        byte[] root = transactionRoot;
+        if (root == null) {
+            root = MerkleTree.of(transactions).getRoot();
+            transactionRoot = root;
+        }
+        return header.hasMerkleRoot(root);
+    }
+
+    /**
+     * Rendered once on first use; blocks are immutable.
+     */
     @Override
     public String toString() {
+        String text = rendered;
+        if (text == null) {
+            text = render();
+            rendered = text;
+        }
+        return text;
+    }
+
+    private String render() {
         StringBuilder sb = new StringBuilder();
         sb.append("Block:\n");
         sb.append("Created by: ").append(minerName).append("\n");
         sb.append(minerName).append(" gets 100 VC\n");
-        sb.append("Id: ").append(id).append("\n");
-        sb.append("Timestamp: ").append(timestamp).append("\n");
-        sb.append("Magic number: ").append(magicNumber).append("\n");
-        sb.append("Hash of the previous block:\n").append(previousHash).append("\n");
-        sb.append("Hash of the block:\n").append(hash).append("\n");
+        sb.append("Id: ").append(header.getId()).append("\n");
+        sb.append("Timestamp: ").append(header.getTimestamp()).append("\n");
+        sb.append("Magic number: ").append(header.getNonce()).append("\n");
+        sb.append("Hash of the previous block:\n").append(header.getPreviousHash()).append("\n");
+        sb.append("Hash of the block:\n").append(header.getHash()).append("\n");
 
         sb.append("Block data:\n");
         if (transactions.size() <= 1) {
@@ -72,7 +133,8 @@ public final class Block {
             }
         }
 
-        sb.append("Block was generating for ").append(generationTime).append(" seconds");
+        sb.append(String.format(Locale.ROOT, "Block was generating for %.3f seconds",
+                generationTime / MILLIS_PER_SECOND));
         return sb.toString();
     }
 }
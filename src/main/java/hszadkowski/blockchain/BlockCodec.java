@@ -0,0 +1,186 @@
+package hszadkowski.blockchain;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Canonical binary form of blocks and transactions, used for hashing, storage and the wire.
+ * Numbers are fixed-width big-endian; strings, keys and signatures are prefixed with an
+ * unsigned 16-bit length where {@code 0xFFFF} marks an absent value. Encoded blocks start
+ * with a format version byte. Decoding reads straight from the given buffer, so a mapped
+ * segment can be decoded without copying the record first.
+ *
+ * <pre>
+ * block := version:u8 id:i32 timestamp:i64 previousHash:32 hash:32 magicNumber:i32
+ *          extraNonce:i64 generationMillis:i64 minerName:str count:i32 transaction*
+ * transaction := id:i64 from:str to:str amount:i64 scheme:u8 signature:bytes publicKey:bytes
+ * </pre>
+ *
+ * Only the current version is read. Blocks of versions 1 to 4 were hashed over an older
+ * header, without the Merkle root or the timestamp, so they could not pass the current
+ * proof-of-work check even if they still decoded; a store written by an older release has to
+ * be mined afresh.
+ */
+public final class BlockCodec {
+    public static final byte FORMAT_VERSION = 5;
+
+    private static final int ABSENT = 0xFFFF;
+    private static final int MAX_LENGTH = ABSENT - 1;
+    private static final int LENGTH_BYTES = Short.BYTES;
+    private static final int BLOCK_FIXED_BYTES = 1 + Integer.BYTES + Long.BYTES + Integer.BYTES
+            + 2 * Hash256.LENGTH + Long.BYTES + Long.BYTES + Integer.BYTES + LENGTH_BYTES;
+    private static final int TRANSACTION_FIXED_BYTES = Long.BYTES + Long.BYTES + 1 + 4 * LENGTH_BYTES;
+
+    private BlockCodec() {
+    }
+
+    public static byte[] encode(final Block block) {
+        ByteBuffer out = ByteBuffer.allocate(encodedSize(block));
+        encode(block, out);
+        return out.array();
+    }
+
+    public static void encode(final Block block, final ByteBuffer out) {
+        out.put(FORMAT_VERSION);
+        out.putInt(block.getId());
+        out.putLong(block.getTimestamp());
+        block.getPreviousHash().writeTo(out);
+        block.getHash().writeTo(out);
+        out.putInt(block.getMagicNumber());
+        out.putLong(block.getExtraNonce());
+        out.putLong(block.getGenerationTime());
+        putString(out, block.getMinerName());
+        out.putInt(block.getTransactions().size());
+        for (Transaction tx : block.getTransactions()) {
+            encode(tx, out);
+        }
+    }
+
+    public static byte[] encode(final Transaction tx) {
+        ByteBuffer out = ByteBuffer.allocate(encodedSize(tx));
+        encode(tx, out);
+        return out.array();
+    }
+
+    public static void encode(final Transaction tx, final ByteBuffer out) {
+        out.putLong(tx.getTransactionId());
+        putString(out, tx.getFrom());
+        putString(out, tx.getTo());
+        out.putLong(tx.getAmount());
+        out.put(tx.getScheme().getId());
+        putBytes(out, tx.getSignature());
+        putBytes(out, tx.getPublicKey() == null ? null : tx.getPublicKey().getEncoded());
+    }
+
+    public static int encodedSize(final Block block) {
+        int size = BLOCK_FIXED_BYTES + utf8Length(block.getMinerName());
+        for (Transaction tx : block.getTransactions()) {
+            size += encodedSize(tx);
+        }
+        return size;
+    }
+
+    public static int encodedSize(final Transaction tx) {
+        return TRANSACTION_FIXED_BYTES + utf8Length(tx.getFrom()) + utf8Length(tx.getTo())
+                + (tx.getSignature() == null ? 0 : tx.getSignature().length)
+                + (tx.getPublicKey() == null ? 0 : tx.getPublicKey().getEncoded().length);
+    }
+
+    /**
+     * Decodes one block starting at the buffer's position and leaves the position behind it.
+     */
+    public static Block decodeBlock(final ByteBuffer in) {
+        byte version = in.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported block format version " + version);
+        }
+        int id = in.getInt();
+        long timestamp = in.getLong();
+        Hash256 previousHash = Hash256.read(in);
+        Hash256 hash = Hash256.read(in);
+        int magicNumber = in.getInt();
+        long extraNonce = in.getLong();
+        long generationTime = in.getLong();
+        String minerName = getString(in);
+        int count = in.getInt();
+        if (count < 0 || count > in.remaining() / (TRANSACTION_FIXED_BYTES - 1)) {
+            throw new IllegalArgumentException("Corrupt transaction count " + count);
+        }
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(decodeTransaction(in));
+        }
+        // The root is not stored: rebuilt from the transactions, it commits to exactly what was read
+        BlockHeader header = new BlockHeader(id, previousHash, MerkleTree.of(transactions).getRoot(), timestamp,
+                extraNonce, magicNumber, hash);
+        return new Block(header, generationTime, transactions, minerName);
+    }
+
+    public static Transaction decodeTransaction(final ByteBuffer in) {
+        long id = in.getLong();
+        String from = getString(in);
+        String to = getString(in);
+        long amount = in.getLong();
+        SignatureScheme scheme = SignatureScheme.fromId(in.get());
+        byte[] signature = getBytes(in);
+        byte[] key = getBytes(in);
+        return new Transaction(from, to, amount, id, signature, key == null ? null : decodeKey(scheme, key), scheme);
+    }
+
+    private static PublicKey decodeKey(final SignatureScheme scheme, final byte[] key) {
+        try {
+            return scheme.decodePublicKey(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Encoded public key cannot be decoded", e);
+        }
+    }
+
+    static int utf8Length(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static void putString(final ByteBuffer out, final String value) {
+        putBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void putBytes(final ByteBuffer out, final byte[] data) {
+        if (data == null) {
+            out.putShort((short) ABSENT);
+            return;
+        }
+        if (data.length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Field of " + data.length + " bytes exceeds " + MAX_LENGTH);
+        }
+        out.putShort((short) data.length);
+        out.put(data);
+    }
+
+    static String getString(final ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length == ABSENT) {
+            throw new IllegalArgumentException("Missing required string");
+        }
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] getBytes(final ByteBuffer in) {
+        int length = Short.toUnsignedInt(in.getShort());
+        if (length == ABSENT) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,104 @@
+package hszadkowski.blockchain;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * What a block's proof-of-work commits to. Transactions are represented only by their
+ * Merkle root, so the header, and the cost of hashing it, does not grow with block size.
+ * The timestamp is covered too, because retargeting is timed by it: headers alone are
+ * enough to replay every target, as {@link LightVerifier} does.
+ *
+ * <pre>
+ * header := version:u8 id:i32 previousHash:32 merkleRoot:32 timestamp:i64 extraNonce:i64 nonce:i32
+ * </pre>
+ */
+public final class BlockHeader {
+    public static final byte VERSION = 3;
+    static final int PREFIX_LENGTH = 1 + Integer.BYTES + Hash256.LENGTH + Sha256.DIGEST_LENGTH + 2 * Long.BYTES;
+
+    private final int id;
+    private final Hash256 previousHash;
+    private final byte[] merkleRoot;
+    private final long timestamp;
+    private final long extraNonce;
+    private final int nonce;
+    private final Hash256 hash;
+
+    public BlockHeader(final int id,
+                       final Hash256 previousHash,
+                       final byte[] merkleRoot,
+                       final long timestamp,
+                       final long extraNonce,
+                       final int nonce,
+                       final Hash256 hash) {
+        this.id = id;
+        this.previousHash = previousHash;
+        this.merkleRoot = merkleRoot.clone();
+        this.timestamp = timestamp;
+        this.extraNonce = extraNonce;
+        this.nonce = nonce;
+        this.hash = hash;
+    }
+
+    /**
+     * The header bytes up to, but excluding, the trailing nonce.
+     */
+    public static byte[] prefix(final int id,
+                                final Hash256 previousHash,
+                                final byte[] merkleRoot,
+                                final long timestamp,
+                                final long extraNonce) {
+        ByteBuffer out = ByteBuffer.allocate(PREFIX_LENGTH)
+                .put(VERSION)
+                .putInt(id);
+        previousHash.writeTo(out);
+        return out.put(merkleRoot)
+                .putLong(timestamp)
+                .putLong(extraNonce)
+                .array();
+    }
+
+    public byte[] prefix() {
+        return prefix(id, previousHash, merkleRoot, timestamp, extraNonce);
+    }
+
+    /**
+     * Recomputes the hash from the header fields.
+     */
+    public Hash256 computeHash() {
+        return HashingEngine.hashHeader(prefix(), nonce);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public Hash256 getPreviousHash() {
+        return previousHash;
+    }
+
+    public byte[] getMerkleRoot() {
+        return merkleRoot.clone();
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getExtraNonce() {
+        return extraNonce;
+    }
+
+    public int getNonce() {
+        return nonce;
+    }
+
+    public Hash256 getHash() {
+        return hash;
+    }
+
+    boolean hasMerkleRoot(final byte[] root) {
+        return Arrays.equals(merkleRoot, root);
+    }
+}
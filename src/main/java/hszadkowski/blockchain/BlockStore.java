@@ -0,0 +1,295 @@
+package hszadkowski.blockchain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only block storage split into segment files. Each record is
+ * {@code [length][crc32][payload]} with the payload in {@link BlockCodec} form.
+ * Sealed segments are memory-mapped for reads and get an offset index file, so
+ * reopening only has to scan the last, still open segment and cut off a torn record
+ * at its end. Appends are fsynced in batches.
+ */
+public final class BlockStore implements Closeable {
+    static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    static final int DEFAULT_SYNC_EVERY = 32;
+
+    private static final int RECORD_HEADER = 8;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8,10})\\.log");
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int syncEvery;
+
+    private final List<MappedByteBuffer> sealed = new ArrayList<>();
+    private long[] positions = new long[INITIAL_CAPACITY];
+    private int count;
+
+    private FileChannel active;
+    private int activeNumber;
+    private long activeSize;
+    private int activeFirstIndex;
+    private int unsynced;
+
+    private BlockStore(final Path directory, final long segmentBytes, final int syncEvery) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.syncEvery = syncEvery;
+    }
+
+    public static BlockStore open(final Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_SYNC_EVERY);
+    }
+
+    public static BlockStore open(final Path directory, final long segmentBytes, final int syncEvery)
+            throws IOException {
+        Files.createDirectories(directory);
+        BlockStore store = new BlockStore(directory, segmentBytes, syncEvery);
+        store.recover();
+        return store;
+    }
+
+    private void recover() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.log")) {
+            for (Path file : files) {
+                Matcher name = SEGMENT_NAME.matcher(file.getFileName().toString());
+                // Anything else, e.g. an editor backup or a copy, is not a segment we wrote
+                long number = name.matches() ? Long.parseLong(name.group(1)) : -1;
+                if (number >= 0 && number <= Integer.MAX_VALUE) {
+                    numbers.add((int) number);
+                }
+            }
+        }
+        numbers.sort(null);
+        for (int i = 0; i < numbers.size(); i++) {
+            if (numbers.get(i) != i) {
+                throw new IOException("Missing block segment " + i + " in " + directory);
+            }
+        }
+
+        for (int number = 0; number < numbers.size() - 1; number++) {
+            try (FileChannel channel = FileChannel.open(segmentFile(number), StandardOpenOption.READ)) {
+                if (!loadIndex(number)) {
+                    scan(channel, number);
+                }
+                sealed.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        activeNumber = Math.max(0, numbers.size() - 1);
+        activeFirstIndex = count;
+        active = FileChannel.open(segmentFile(activeNumber),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeSize = scan(active, activeNumber);
+        if (active.size() > activeSize) {
+            active.truncate(activeSize);
+            active.force(true);
+        }
+    }
+
+    /**
+     * Reads records from the start of a segment until the first torn or corrupt one.
+     *
+     * @return the offset just behind the last valid record
+     */
+    private long scan(final FileChannel channel, final int number) throws IOException {
+        long size = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        while (offset + RECORD_HEADER <= size) {
+            header.clear();
+            channel.read(header, offset);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length <= 0 || offset + RECORD_HEADER + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, offset + RECORD_HEADER);
+            if (crc32(payload.array(), length) != crc) {
+                break;
+            }
+            addPosition(number, offset);
+            offset += RECORD_HEADER + length;
+        }
+        return offset;
+    }
+
+    private boolean loadIndex(final int number) throws IOException {
+        Path indexFile = indexFile(number);
+        if (!Files.exists(indexFile)) {
+            return false;
+        }
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+        if (index.remaining() < Integer.BYTES + Long.BYTES) {
+            return false;
+        }
+        int records = index.getInt();
+        if (records < 0 || index.remaining() != (long) records * Long.BYTES + Long.BYTES) {
+            return false;
+        }
+        long[] offsets = new long[records];
+        index.asLongBuffer().get(offsets);
+        index.position(index.position() + records * Long.BYTES);
+        if (index.getLong() != checksum(offsets, records)) {
+            return false;
+        }
+        for (long offset : offsets) {
+            addPosition(number, offset);
+        }
+        return true;
+    }
+
+    public synchronized void append(final Block block) throws IOException {
+        if (block.getId() != count + 1) {
+            throw new IllegalArgumentException("Expected block " + (count + 1) + " but got " + block.getId());
+        }
+        byte[] payload = BlockCodec.encode(block);
+        int recordLength = RECORD_HEADER + payload.length;
+        if (activeSize > 0 && activeSize + recordLength > segmentBytes) {
+            seal();
+        }
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        record.putInt(payload.length).putInt(crc32(payload, payload.length)).put(payload).flip();
+        long offset = activeSize;
+        while (record.hasRemaining()) {
+            active.write(record, offset + record.position());
+        }
+        activeSize += recordLength;
+        addPosition(activeNumber, offset);
+        if (++unsynced >= syncEvery) {
+            sync();
+        }
+    }
+
+    private void seal() throws IOException {
+        active.force(true);
+        unsynced = 0;
+        int records = count - activeFirstIndex;
+        long[] offsets = new long[records];
+        for (int i = 0; i < records; i++) {
+            offsets[i] = positions[activeFirstIndex + i] & OFFSET_MASK;
+        }
+        ByteBuffer index = ByteBuffer.allocate(Integer.BYTES + records * Long.BYTES + Long.BYTES);
+        index.putInt(records);
+        index.asLongBuffer().put(offsets);
+        index.position(index.position() + records * Long.BYTES);
+        index.putLong(checksum(offsets, records));
+        Path tmp = directory.resolve(indexFile(activeNumber).getFileName() + ".tmp");
+        Files.write(tmp, index.array());
+        Files.move(tmp, indexFile(activeNumber), StandardCopyOption.ATOMIC_MOVE);
+
+        sealed.add(active.map(FileChannel.MapMode.READ_ONLY, 0, activeSize));
+        active.close();
+        activeNumber++;
+        activeFirstIndex = count;
+        activeSize = 0;
+        active = FileChannel.open(segmentFile(activeNumber),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public synchronized Block read(final int id) throws IOException {
+        if (id < 1 || id > count) {
+            throw new IllegalArgumentException("No block " + id + " in store of " + count + " blocks");
+        }
+        long position = positions[id - 1];
+        int number = (int) (position >>> OFFSET_BITS);
+        long offset = position & OFFSET_MASK;
+        if (number < sealed.size()) {
+            ByteBuffer segment = sealed.get(number).duplicate();
+            int length = segment.getInt((int) offset);
+            segment.position((int) offset + RECORD_HEADER).limit((int) offset + RECORD_HEADER + length);
+            return decode(segment.slice());
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        active.read(header, offset);
+        ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+        active.read(payload, offset + RECORD_HEADER);
+        payload.flip();
+        return decode(payload);
+    }
+
+    public synchronized List<Block> readAll() throws IOException {
+        List<Block> blocks = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            blocks.add(read(id));
+        }
+        return blocks;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    int segmentCount() {
+        return sealed.size() + 1;
+    }
+
+    public synchronized void sync() throws IOException {
+        active.force(false);
+        unsynced = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        active.close();
+    }
+
+    private void addPosition(final int number, final long offset) {
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, count * 2);
+        }
+        positions[count++] = ((long) number << OFFSET_BITS) | offset;
+    }
+
+    private Path segmentFile(final int number) {
+        return directory.resolve(String.format("segment-%08d.log", number));
+    }
+
+    private Path indexFile(final int number) {
+        return directory.resolve(String.format("segment-%08d.idx", number));
+    }
+
+    private static int crc32(final byte[] data, final int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static long checksum(final long[] offsets, final int records) {
+        CRC32 crc = new CRC32();
+        ByteBuffer bytes = ByteBuffer.allocate(records * Long.BYTES);
+        bytes.asLongBuffer().put(offsets, 0, records);
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    private static Block decode(final ByteBuffer payload) throws IOException {
+        try {
+            return BlockCodec.decodeBlock(payload);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException("Stored block cannot be decoded", e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package hszadkowski.blockchain;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Checking a submitted block against the tip and verifying its signatures.
+ */
+@Name("hszadkowski.blockchain.BlockValidation")
+@Label("Block Validation")
+@Category("Blockchain")
+@Description("Validation of a block offered to the chain")
+final class BlockValidationEvent extends Event {
+    @Label("Block Id")
+    int blockId;
+
+    @Label("Transactions")
+    int transactionCount;
+
+    @Label("Accepted")
+    boolean accepted;
+}
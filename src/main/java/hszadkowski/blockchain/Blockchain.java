@@ -1,137 +1,465 @@
 package hszadkowski.blockchain;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 
 public final class Blockchain {
+    static final int DEFAULT_MAX_BLOCK_TRANSACTIONS = 1000;
+
     private final List<Block> chain = Collections.synchronizedList(new ArrayList<>());
-    private final ConcurrentLinkedQueue<Transaction> transactionQueue = new ConcurrentLinkedQueue<>();
+    private final Mempool mempool;
+    private final Ledger ledger = new Ledger();
+    private final SignatureVerifier verifier = new SignatureVerifier();
+    private final EventDispatcher events = new EventDispatcher();
+    private final ChainMetrics metrics;
+    // Transaction id -> block id in the high and position in the low 32 bits
+    private final Map<Long, Long> transactionLocations = new HashMap<>();
 
     private final int targetBlocks;
-    private int difficulty = 0;
-    private volatile boolean targetReached = false;
     private final ExecutorService minerExecutor;
+    private final BlockStore store;
+    private final LedgerSnapshots snapshots;
+    private final Retargeter retargeter;
+    private volatile ChainState state = ChainState.GENESIS;
 
     public Blockchain(final int targetBlocks, final ExecutorService minerExecutor) {
+        this(targetBlocks, minerExecutor, DEFAULT_MAX_BLOCK_TRANSACTIONS);
+    }
+
+    public Blockchain(final int targetBlocks, final ExecutorService minerExecutor, final int maxBlockTransactions) {
+        this(targetBlocks, minerExecutor, maxBlockTransactions,
+                Retargeter.fromSystemProperties().getIntervalMillis());
+    }
+
+    /**
+     * @param blockIntervalMillis the block time the difficulty is retargeted towards
+     */
+    public Blockchain(final int targetBlocks,
+                      final ExecutorService minerExecutor,
+                      final int maxBlockTransactions,
+                      final long blockIntervalMillis) {
         this.targetBlocks = targetBlocks;
         this.minerExecutor = minerExecutor;
+        this.mempool = new Mempool(maxBlockTransactions);
+        this.metrics = new ChainMetrics(mempool, verifier, events);
+        this.store = null;
+        this.snapshots = null;
+        this.retargeter = new Retargeter(blockIntervalMillis, Retargeter.DEFAULT_WINDOW);
     }
 
-    public synchronized int getNextBlockId() {
-        return chain.size() + 1;
+    /**
+     * A chain backed by {@code store}: the blocks already persisted there are loaded
+     * and every accepted block is appended to it.
+     */
+    public Blockchain(final int targetBlocks,
+                      final ExecutorService minerExecutor,
+                      final int maxBlockTransactions,
+                      final BlockStore store) throws IOException {
+        this(targetBlocks, minerExecutor, maxBlockTransactions, store, null);
     }
 
-    public synchronized int getDifficulty() {
-        return difficulty;
+    /**
+     * A chain backed by {@code store} whose ledger starts from the newest usable snapshot in
+     * {@code snapshots}, if any, and is saved there again every few blocks.
+     */
+    public Blockchain(final int targetBlocks,
+                      final ExecutorService minerExecutor,
+                      final int maxBlockTransactions,
+                      final BlockStore store,
+                      final LedgerSnapshots snapshots) throws IOException {
+        this(targetBlocks, minerExecutor, maxBlockTransactions, store, snapshots, store.readAll());
     }
 
-    public synchronized boolean hasReachedTarget() {
-        return targetReached;
+    private Blockchain(final int targetBlocks,
+                       final ExecutorService minerExecutor,
+                       final int maxBlockTransactions,
+                       final BlockStore store,
+                       final LedgerSnapshots snapshots,
+                       final List<Block> stored) throws IOException {
+        this(targetBlocks, minerExecutor, maxBlockTransactions, store, snapshots, stored,
+                snapshots == null ? null : snapshots.loadNewest(stored));
     }
 
-    public synchronized String getLastHash() {
-        return chain.isEmpty() ? "0" : chain.get(chain.size() - 1).getHash();
+    /**
+     * Like {@link #Blockchain(int, ExecutorService, int, BlockStore, LedgerSnapshots)}, but starts
+     * from blocks and a snapshot the caller already read, e.g. to validate them first.
+     *
+     * @param stored   everything in {@code store}
+     * @param snapshot the snapshot in {@code snapshots} to start the ledger from, or null
+     */
+    public Blockchain(final int targetBlocks,
+                      final ExecutorService minerExecutor,
+                      final int maxBlockTransactions,
+                      final BlockStore store,
+                      final LedgerSnapshots snapshots,
+                      final List<Block> stored,
+                      final LedgerSnapshots.Snapshot snapshot) {
+        this.targetBlocks = targetBlocks;
+        this.minerExecutor = minerExecutor;
+        this.mempool = new Mempool(maxBlockTransactions);
+        this.metrics = new ChainMetrics(mempool, verifier, events);
+        this.store = store;
+        this.snapshots = snapshots;
+        this.retargeter = Retargeter.fromSystemProperties();
+        restore(stored, snapshot);
     }
 
-    public synchronized void addBlock(final Block block) {
-        if (targetReached) {
-            return;
+    /**
+     * Only the ledger starts from {@code snapshot}. Every block is still held in memory and
+     * indexed by transaction id, which repeated ids and inclusion proofs need, and the target
+     * is replayed from every timestamp since genesis; both are cheap next to decoding, which
+     * the caller does once for validation and restore together. Serving blocks from the
+     * store's offset index on demand instead would make startup independent of the chain's
+     * length, but every reader of the in-memory chain would have to go through the store.
+     */
+    private void restore(final List<Block> blocks, final LedgerSnapshots.Snapshot snapshot) {
+        if (snapshot != null) {
+            ledger.load(snapshot.getHeight(), snapshot.getBalances());
         }
-
-        if (isValidBlock(block)) {
+        ChainState restored = ChainState.GENESIS;
+        long previousTimestamp = 0;
+        for (Block block : blocks) {
             chain.add(block);
-            for (Transaction tx : block.getTransactions()) {
-                transactionQueue.remove(tx);
+            // Blocks up to the snapshot are already in its balances
+            if (chain.size() > ledger.getHeight()) {
+                ledger.apply(block);
             }
+            indexTransactions(block);
+            restored = restored.withTip(block, chain.size() >= targetBlocks)
+                    .withTarget(retargeter.record(restored.getTarget(),
+                            retargeter.blockMillis(block.getId(), previousTimestamp, block.getTimestamp())));
+            previousTimestamp = block.getTimestamp();
+        }
+        state = restored;
+    }
 
-            System.out.println(block);
-            adjustDifficulty(block.getGenerationTime());
+    /**
+     * Where block, rejection and difficulty events go. Nothing is printed unless a
+     * listener such as {@link ConsoleListener} subscribes.
+     */
+    public EventDispatcher getEvents() {
+        return events;
+    }
 
-            if (chain.size() >= targetBlocks) {
-                targetReached = true;
-                if (!minerExecutor.isShutdown()) {
-                    minerExecutor.shutdownNow();
-                }
+    public ChainMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The current tip as one consistent snapshot. Reading it never blocks.
+     */
+    public ChainState getState() {
+        return state;
+    }
+
+    public int getNextBlockId() {
+        return state.getHeight() + 1;
+    }
+
+    public int getDifficulty() {
+        return state.getDifficulty();
+    }
+
+    public Hash256 getTarget() {
+        return state.getTarget();
+    }
+
+    public long getBlockIntervalMillis() {
+        return retargeter.getIntervalMillis();
+    }
+
+    public boolean hasReachedTarget() {
+        return state.isTargetReached();
+    }
+
+    /**
+     * Incremented every time a block is accepted. Miners compare it against the value
+     * they saw when building their template to notice that their work went stale.
+     */
+    public long getTipVersion() {
+        return state.getTipVersion();
+    }
+
+    public Hash256 getLastHash() {
+        return state.getLastHash();
+    }
+
+    public void addBlock(final Block block) {
+        long start = System.nanoTime();
+        BlockValidationEvent event = new BlockValidationEvent();
+        event.begin();
+        boolean accepted = false;
+        try {
+            accepted = acceptBlock(block);
+        } finally {
+            metrics.getAddBlockLatency().record(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.blockId = block.getId();
+                event.transactionCount = block.getTransactions().size();
+                event.accepted = accepted;
+                event.commit();
             }
         }
     }
 
-    private boolean isValidBlock(final Block block) {
-        if (!block.getHash().startsWith("0".repeat(difficulty))) {
+    private boolean acceptBlock(final Block block) {
+        // Cheap checks against the snapshot first, so stale blocks never reach signature verification
+        if (state.isTargetReached() || state.checkHeader(block) != null) {
             return false;
         }
-        if (chain.isEmpty()) {
-            if (!"0".equals(block.getPreviousHash())) {
+
+        Transaction invalid = verifier.findInvalid(block.getTransactions());
+        if (invalid != null) {
+            events.publish(listener -> listener.onTransactionRejected(invalid, AdmissionResult.INVALID_SIGNATURE));
+            return false;
+        }
+
+        long waiting = System.nanoTime();
+        synchronized (this) {
+            metrics.getLockWait().record(System.nanoTime() - waiting);
+            // The tip may have moved while the signatures were being verified
+            if (state.isTargetReached() || state.checkHeader(block) != null || repeatsTransaction(block)
+                    || !ledger.canAfford(block)) {
                 return false;
             }
-        } else {
-            Block lastBlock = chain.get(chain.size() - 1);
-            if (!lastBlock.getHash().equals(block.getPreviousHash())) {
-                return false;
+
+            if (store != null) {
+                try {
+                    store.append(block);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not persist block " + block.getId(), e);
+                }
+            }
+            long previousTimestamp = chain.isEmpty() ? 0 : chain.get(chain.size() - 1).getTimestamp();
+            if (!chain.isEmpty()) {
+                metrics.getBlockInterval().record(block.getTimestamp() - previousTimestamp);
+            }
+            chain.add(block);
+            ledger.apply(block);
+            indexTransactions(block);
+            if (snapshots != null && snapshots.isDue(chain.size())) {
+                writeSnapshot(chain.size(), block.getHash());
+            }
+            mempool.removeAll(block.getTransactions());
+            verifier.forget(block.getTransactions());
+            evictUnaffordable(block);
+
+            events.publish(listener -> listener.onBlockAccepted(block));
+            boolean reached = chain.size() >= targetBlocks;
+            Hash256 target = nextTarget(state.getTarget(),
+                    retargeter.blockMillis(block.getId(), previousTimestamp, block.getTimestamp()));
+            state = state.withTip(block, reached).withTarget(target);
+
+            if (reached && !minerExecutor.isShutdown()) {
+                minerExecutor.shutdownNow();
             }
         }
+        return true;
+    }
+
+    /**
+     * Only the copy of the balances is made under the lock; encoding and I/O happen on the
+     * snapshot writer, and a failure is reported to listeners.
+     */
+    private void writeSnapshot(final int height, final Hash256 tipHash) {
+        snapshots.writeAsync(height, tipHash, ledger.balances()).whenComplete((file, error) -> {
+            if (error != null) {
+                events.publish(listener -> listener.onSnapshotFailed(height, error));
+            }
+        });
+    }
 
+    /**
+     * Drops pending transactions that the senders of {@code block} can no longer pay for, so the
+     * next template does not fail {@link Ledger#canAfford}.
+     */
+    private void evictUnaffordable(final Block block) {
         for (Transaction tx : block.getTransactions()) {
-            if (!tx.isAwardTransaction() && tx.isSignatureValid()) {
-                System.out.println("Invalid signature for transaction: " + tx);
-                return false;
+            if (!tx.isAwardTransaction()) {
+                int sender = tx.getFromId();
+                List<Transaction> evicted = mempool.removeUnaffordable(sender, ledger.getBalance(sender));
+                verifier.forget(evicted);
+                for (Transaction dropped : evicted) {
+                    events.publish(listener -> listener.onTransactionRejected(dropped,
+                            AdmissionResult.INSUFFICIENT_FUNDS));
+                }
             }
         }
-        return true;
     }
 
-    public synchronized void adjustDifficulty(final long generationTime) {
-        if (generationTime < 1) {
-            difficulty++;
-            System.out.println("N was increased to " + difficulty + "\n");
-        } else if (generationTime > 5) {
-            difficulty = Math.max(0, difficulty - 1);
-            System.out.println("N was decreased to " + difficulty + "\n");
+    /**
+     * Whether {@code block} carries a transaction id twice, or one already in the chain.
+     * A repeat would apply the same payment twice, and identical leaves would let two
+     * transaction lists share a Merkle root.
+     */
+    private boolean repeatsTransaction(final Block block) {
+        Set<Long> ids = new HashSet<>();
+        for (Transaction tx : block.getTransactions()) {
+            long id = tx.getTransactionId();
+            if (!tx.isAwardTransaction() && (!ids.add(id) || transactionLocations.containsKey(id))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void indexTransactions(final Block block) {
+        List<Transaction> transactions = block.getTransactions();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction tx = transactions.get(i);
+            // Award transactions all share id 0, so they cannot be looked up by id
+            if (!tx.isAwardTransaction()) {
+                transactionLocations.put(tx.getTransactionId(), ((long) block.getId() << Integer.SIZE) | i);
+            }
+        }
+    }
+
+    private Hash256 nextTarget(final Hash256 target, final long blockMillis) {
+        Hash256 next = retargeter.record(target, blockMillis);
+        events.publish(listener -> listener.onDifficultyAdjusted(target, next, blockMillis));
+        return next;
+    }
+
+    public void addTransaction(final Transaction transaction) {
+        TransactionAdmissionEvent event = new TransactionAdmissionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean signed = transaction.isAwardTransaction() || verifier.verify(transaction);
+        long waiting = System.nanoTime();
+        AdmissionResult result;
+        long checked;
+        synchronized (this) {
+            long entered = System.nanoTime();
+            metrics.getLockWait().record(entered - waiting);
+            result = admit(transaction, signed);
+            checked = System.nanoTime() - entered;
+        }
+        metrics.getAddTransactionLatency().record(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.transactionId = transaction.getTransactionId();
+            event.verifyNanos = waiting - start;
+            event.balanceCheckNanos = checked;
+            event.result = result.name();
+            event.commit();
+        }
+    }
+
+    /**
+     * Submits a batch without blocking. Signatures are checked in parallel outside the
+     * chain lock; the balance checks and the enqueue then happen for the whole batch in
+     * one short critical section. Transactions are admitted in iteration order, so a later
+     * one may be refused for funds an earlier one of the same batch has already committed.
+     *
+     * @return one future per transaction, in iteration order
+     */
+    public List<CompletableFuture<AdmissionResult>> addTransactions(final Collection<Transaction> transactions) {
+        List<Transaction> batch = List.copyOf(transactions);
+        CompletableFuture<AdmissionResult[]> admitted = verifier.verifyAllAsync(batch)
+                .thenApply(signed -> admitAll(batch, signed));
+        List<CompletableFuture<AdmissionResult>> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            int index = i;
+            results.add(admitted.thenApply(all -> all[index]));
+        }
+        return results;
+    }
+
+    private AdmissionResult[] admitAll(final List<Transaction> batch, final boolean[] signed) {
+        AdmissionResult[] results = new AdmissionResult[batch.size()];
+        long waiting = System.nanoTime();
+        synchronized (this) {
+            metrics.getLockWait().record(System.nanoTime() - waiting);
+            for (int i = 0; i < results.length; i++) {
+                results[i] = admit(batch.get(i), signed[i]);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Funds already promised to pending transactions count as spent, so the mempool
+     * never holds more than a sender can pay. Caller holds the chain lock.
+     */
+    private AdmissionResult admit(final Transaction transaction, final boolean signed) {
+        AdmissionResult result = check(transaction, signed);
+        if (result == AdmissionResult.ACCEPTED) {
+            mempool.add(transaction);
         } else {
-            System.out.println("N stays the same (" + difficulty + ")\n");
+            events.publish(listener -> listener.onTransactionRejected(transaction, result));
         }
+        return result;
     }
 
-    public synchronized void addTransaction(final Transaction transaction) {
+    private AdmissionResult check(final Transaction transaction, final boolean signed) {
+        if (mempool.contains(transaction.getTransactionId())
+                || transactionLocations.containsKey(transaction.getTransactionId())) {
+            return AdmissionResult.DUPLICATE;
+        }
         if (!transaction.isAwardTransaction()) {
-            if (transaction.isSignatureValid()) {
-                System.out.println("Rejected invalid signature for transaction: " + transaction);
-                return;
+            if (!signed) {
+                return AdmissionResult.INVALID_SIGNATURE;
             }
-            long senderBalance = getBalance(transaction.getFrom());
-            if (senderBalance < transaction.getAmount()) {
-                System.out.println("Rejected transaction (insufficient funds): " + transaction);
-                return;
+            // Not registered yet: only admitted transactions get ids
+            int sender = transaction.findFromId();
+            if (ledger.getBalance(sender) - mempool.getPendingSpend(sender) < transaction.getAmount()) {
+                return AdmissionResult.INSUFFICIENT_FUNDS;
             }
         }
-        transactionQueue.add(transaction);
+        return AdmissionResult.ACCEPTED;
     }
 
     public synchronized List<Transaction> collectTransactionsForNewBlock(final String minerName) {
-        List<Transaction> txs = new ArrayList<>(transactionQueue);
-        Transaction awardTx = new Transaction("BLOCKCHAIN", minerName, 100);
-        txs.add(0, awardTx);
+        List<Transaction> pending = mempool.selectForBlock();
+        List<Transaction> txs = new ArrayList<>(pending.size() + 1);
+        txs.add(new Transaction("BLOCKCHAIN", minerName, 100));
+        txs.addAll(pending);
         return txs;
     }
 
+    public synchronized int getPendingTransactionCount() {
+        return mempool.size();
+    }
+
     public synchronized long getBalance(final String user) {
-        if (user.equals("BLOCKCHAIN")) {
-            return Long.MAX_VALUE;
-        }
-        long balance = 100;
-        for (Block block : chain) {
-            for (Transaction tx : block.getTransactions()) {
-                if (tx.getFrom().equals(user)) {
-                    balance -= tx.getAmount();
-                }
-                if (tx.getTo().equals(user)) {
-                    balance += tx.getAmount();
-                }
-            }
+        return ledger.getBalance(user);
+    }
+
+    public synchronized long getBalanceAt(final String user, final int height) {
+        return ledger.getBalanceAt(user, height);
+    }
+
+    public synchronized boolean isLedgerConsistent() {
+        return ledger.isConsistentWith(chain);
+    }
+
+    public synchronized BlockHeader getHeader(final int id) {
+        if (id < 1 || id > chain.size()) {
+            throw new IllegalArgumentException("No block " + id + " in chain of " + chain.size() + " blocks");
+        }
+        return chain.get(id - 1).getHeader();
+    }
+
+    /**
+     * Proof that the transaction with {@code transactionId} is in the chain, or null if it is not.
+     */
+    public synchronized InclusionProof getInclusionProof(final long transactionId) {
+        Long location = transactionLocations.get(transactionId);
+        if (location == null) {
+            return null;
         }
-        return balance;
+        Block block = chain.get((int) (location >>> Integer.SIZE) - 1);
+        int index = (int) (long) location;
+        byte[][] path = MerkleTree.of(block.getTransactions()).path(index);
+        return new InclusionProof(block.getHeader(), block.getTransactions().get(index), index, path);
     }
 }
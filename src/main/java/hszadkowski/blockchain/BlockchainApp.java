@@ -1,17 +1,27 @@
 package hszadkowski.blockchain;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
+import javax.management.JMException;
+
 public final class BlockchainApp {
     private static final int TARGET_BLOCKS = 15;
-    private static final int MINER_POOL_SIZE = 10;
+    // Set -Dblockchain.dataDir=<dir> to keep the chain across runs
+    private static final String DATA_DIR_PROPERTY = "blockchain.dataDir";
 
     private Blockchain blockchain;
     private ExecutorService miners;
     private ExecutorService txService;
+    private int minerThreads;
+    private BlockStore store;
+    private LedgerSnapshots snapshots;
+    private final List<Miner> minerTasks = new ArrayList<>();
 
     public static void main(String[] args) throws Exception {
         BlockchainApp blockchainApp = new BlockchainApp();
@@ -25,9 +35,53 @@ public final class BlockchainApp {
         waitForCompletion();
     }
 
-    private void initializeBlockchain() {
-        miners = Executors.newFixedThreadPool(MINER_POOL_SIZE);
-        blockchain = new Blockchain(TARGET_BLOCKS, miners);
+    private void initializeBlockchain() throws IOException, InterruptedException {
+        minerThreads = Workers.minerThreads();
+        if (!Workers.isMinerCountPinned()) {
+            minerThreads = Workers.tuneMinerThreads(minerThreads, Workers.DEFAULT_PROBE_MILLIS);
+        }
+        System.out.println("Mining with " + minerThreads + " threads");
+        miners = Workers.newMinerPool(minerThreads);
+        String dataDir = System.getProperty(DATA_DIR_PROPERTY);
+        if (dataDir == null) {
+            blockchain = new Blockchain(TARGET_BLOCKS, miners);
+        } else {
+            store = BlockStore.open(Paths.get(dataDir));
+            snapshots = LedgerSnapshots.open(Paths.get(dataDir));
+            // Read once: the same blocks and snapshot are validated and then loaded
+            List<Block> stored = store.readAll();
+            LedgerSnapshots.Snapshot snapshot = snapshots.loadNewest(stored);
+            validateStoredChain(stored, snapshot);
+            blockchain = new Blockchain(TARGET_BLOCKS, miners, Blockchain.DEFAULT_MAX_BLOCK_TRANSACTIONS, store,
+                    snapshots, stored, snapshot);
+            System.out.println("Loaded " + store.size() + " blocks from " + dataDir);
+        }
+        blockchain.getEvents().subscribe(new ConsoleListener());
+        try {
+            blockchain.getMetrics().bindTo(JmxMetricsRegistry.register(JmxMetricsRegistry.DEFAULT_NAME));
+        } catch (JMException e) {
+            System.err.println("Metrics are not available over JMX: " + e.getMessage());
+        }
+    }
+
+    private void validateStoredChain(final List<Block> stored, final LedgerSnapshots.Snapshot snapshot)
+            throws IOException {
+        ChainValidator.Result result = new ChainValidator().validate(stored, snapshot);
+        System.out.printf("Validated %d stored blocks in %d ms (%.0f blocks/s)%n", result.getValidBlocks(),
+                TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos()), result.getBlocksPerSecond());
+        if (result.getTrustedBlocks() > 0) {
+            System.out.printf("Trusted %d blocks below a checkpoint: skipped %d signatures, saving about %d ms%n",
+                    result.getTrustedBlocks(), result.getSkippedSignatures(),
+                    TimeUnit.NANOSECONDS.toMillis(result.getEstimatedSavedNanos()));
+        }
+        if (snapshot != null) {
+            System.out.println("Replayed balances from the snapshot at height " + snapshot.getHeight());
+        }
+        if (!result.isValid()) {
+            snapshots.close();
+            store.close();
+            throw new IOException("Stored block " + result.getFirstInvalidId() + " is invalid: " + result.getProblem());
+        }
     }
 
     private void initializeMiners() throws MiningException {
@@ -36,15 +90,19 @@ public final class BlockchainApp {
             Client miner2 = new Client("miner2");
             Client miner7 = new Client("miner7");
             Client miner9 = new Client("miner9");
+            WorkCoordinator coordinator = new WorkCoordinator();
 
-            for (int i = 0; i < MINER_POOL_SIZE; i++) {
+            for (int i = 0; i < minerThreads; i++) {
                 Client randomMiner = switch (i % 4) {
                     case 0 -> miner1;
                     case 1 -> miner2;
                     case 2 -> miner7;
                     default -> miner9;
                 };
-                miners.submit(new Miner(blockchain, randomMiner));
+                Miner miner = new Miner(blockchain, randomMiner, coordinator);
+                minerTasks.add(miner);
+                blockchain.getMetrics().registerMiner(miner.getStats());
+                miners.submit(miner);
             }
         } catch (NoSuchAlgorithmException e) {
             throw new MiningException("Error initializing Clients");
@@ -53,7 +111,7 @@ public final class BlockchainApp {
 
 
     private void simulateTransactions() {
-        txService = Executors.newSingleThreadExecutor();
+        txService = Workers.newIoExecutor();
         txService.submit(() -> {
             try {
                 Client miner100 = new Client("miner100");
@@ -106,11 +164,23 @@ public final class BlockchainApp {
         }
     }
 
-    private void waitForCompletion() throws InterruptedException {
+    private void waitForCompletion() throws InterruptedException, IOException {
         miners.shutdown();
         miners.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
 
         txService.shutdown();
         txService.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        blockchain.getEvents().close();
+
+        if (store != null) {
+            snapshots.close();
+            store.close();
+        }
+
+        MiningStats total = new MiningStats();
+        minerTasks.forEach(miner -> miner.getStats().addTo(total));
+        System.out.printf("Stale work: %.2f%% of %d hashes (%d of %d templates abandoned)%n",
+                total.getStaleWorkPercentage(), total.getHashes(),
+                total.getStaleTemplates(), total.getTemplates());
     }
 }
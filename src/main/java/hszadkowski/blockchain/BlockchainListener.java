@@ -0,0 +1,30 @@
+package hszadkowski.blockchain;
+
+/**
+ * Receives chain events on the {@link EventDispatcher} thread, never on the thread that
+ * changed the chain. Implement only the callbacks of interest.
+ */
+public interface BlockchainListener {
+
+    default void onBlockAccepted(final Block block) {
+    }
+
+    /**
+     * A transaction refused at admission, or one that made a whole block invalid.
+     */
+    default void onTransactionRejected(final Transaction transaction, final AdmissionResult reason) {
+    }
+
+    /**
+     * Called after every block with the proof-of-work targets before and after it; a lower
+     * target means a higher difficulty. {@code blockMillis} is how long the block took.
+     */
+    default void onDifficultyAdjusted(final Hash256 previous, final Hash256 next, final long blockMillis) {
+    }
+
+    /**
+     * The ledger snapshot after block {@code height} could not be written; the chain itself is unaffected.
+     */
+    default void onSnapshotFailed(final int height, final Throwable cause) {
+    }
+}
@@ -0,0 +1,96 @@
+package hszadkowski.blockchain;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instruments of one {@link Blockchain}. The chain records into them directly; any number
+ * of {@link MetricsRegistry} instances can be bound to read them. Latencies are in
+ * nanoseconds, block intervals in milliseconds.
+ */
+public final class ChainMetrics {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final LatencyHistogram addBlockLatency = new LatencyHistogram();
+    private final LatencyHistogram addTransactionLatency = new LatencyHistogram();
+    private final LatencyHistogram lockWait = new LatencyHistogram();
+    private final LatencyHistogram blockInterval = new LatencyHistogram();
+    private final List<MetricsRegistry> registries = new CopyOnWriteArrayList<>();
+    private final List<MiningStats> miners = new CopyOnWriteArrayList<>();
+    private final Mempool mempool;
+    private final SignatureVerifier verifier;
+    private final EventDispatcher events;
+    private final long startNanos = System.nanoTime();
+
+    ChainMetrics(final Mempool mempool, final SignatureVerifier verifier, final EventDispatcher events) {
+        this.mempool = mempool;
+        this.verifier = verifier;
+        this.events = events;
+    }
+
+    /**
+     * Publishes all chain metrics, and those of miners registered so far or later, to {@code registry}.
+     */
+    public synchronized void bindTo(final MetricsRegistry registry) {
+        registry.histogram("chain.addBlock.latencyNanos", addBlockLatency);
+        registry.histogram("chain.addTransaction.latencyNanos", addTransactionLatency);
+        registry.histogram("chain.lockWaitNanos", lockWait);
+        registry.histogram("chain.blockIntervalMillis", blockInterval);
+        registry.histogram("mempool.residenceNanos", mempool.getResidenceTimes());
+        // Both are volatile, so gauges read them safely without the chain monitor
+        registry.gauge("mempool.depth", mempool::size);
+        registry.gauge("mempool.bytes", mempool::getBytes);
+        registry.gauge("signatures.verified", verifier::getVerifications);
+        registry.gauge("signatures.cacheHits", verifier::getCacheHits);
+        registry.gauge("signatures.perSecond", () -> verifier.getVerifications() / elapsedSeconds());
+        registry.gauge("events.dropped", events::getDroppedEvents);
+        registry.gauge("events.listenerFailures", events::getFailedDeliveries);
+        registry.gauge("miners.staleTemplates",
+                () -> miners.stream().mapToLong(MiningStats::getStaleTemplates).sum());
+        for (int i = 0; i < miners.size(); i++) {
+            bindMiner(registry, i, miners.get(i));
+        }
+        registries.add(registry);
+    }
+
+    /**
+     * Adds a miner's counters as {@code miner.<n>.*}, numbered in registration order.
+     */
+    public synchronized void registerMiner(final MiningStats stats) {
+        miners.add(stats);
+        for (MetricsRegistry registry : registries) {
+            bindMiner(registry, miners.size() - 1, stats);
+        }
+    }
+
+    private static void bindMiner(final MetricsRegistry registry, final int index, final MiningStats stats) {
+        String prefix = "miner." + index;
+        registry.gauge(prefix + ".hashRate", stats::getHashRate);
+        registry.gauge(prefix + ".templates", stats::getTemplates);
+        registry.gauge(prefix + ".staleTemplates", stats::getStaleTemplates);
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(1, System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+    }
+
+    public LatencyHistogram getAddBlockLatency() {
+        return addBlockLatency;
+    }
+
+    public LatencyHistogram getAddTransactionLatency() {
+        return addTransactionLatency;
+    }
+
+    /**
+     * Time spent waiting to enter the chain monitor.
+     */
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    public LatencyHistogram getBlockInterval() {
+        return blockInterval;
+    }
+}
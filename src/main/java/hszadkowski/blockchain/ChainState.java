@@ -0,0 +1,114 @@
+package hszadkowski.blockchain;
+
+/**
+ * Immutable view of the chain tip. {@link Blockchain} swaps in a new instance whenever
+ * a block is accepted or the difficulty changes, so readers never need the chain lock.
+ */
+public final class ChainState {
+    // Genesis has no time of its own, so the first block may carry any timestamp
+    static final ChainState GENESIS = new ChainState(0, Hash256.ZERO, Long.MIN_VALUE, Hash256.MAX, false, 0);
+    /**
+     * How far a block's timestamp may run ahead of the local clock. Retargeting trusts the
+     * timestamps, so without a bound a miner could stamp a window far into the future to ease
+     * the target.
+     */
+    static final long MAX_FUTURE_MILLIS = 60_000L;
+
+    private final int height;
+    private final Hash256 lastHash;
+    private final long lastTimestamp;
+    private final Hash256 target;
+    private final boolean targetReached;
+    private final long tipVersion;
+
+    ChainState(final int height,
+               final Hash256 lastHash,
+               final long lastTimestamp,
+               final Hash256 target,
+               final boolean targetReached,
+               final long tipVersion) {
+        this.height = height;
+        this.lastHash = lastHash;
+        this.lastTimestamp = lastTimestamp;
+        this.target = target;
+        this.targetReached = targetReached;
+        this.tipVersion = tipVersion;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Hash256 getLastHash() {
+        return lastHash;
+    }
+
+    /**
+     * The header timestamp of the tip, which the next block may not precede.
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * A block extends this tip only if its hash, as an unsigned number, does not exceed the target.
+     */
+    public Hash256 getTarget() {
+        return target;
+    }
+
+    /**
+     * Whole leading zero bits every valid hash has; {@link #getTarget()} is the exact requirement.
+     */
+    public int getDifficulty() {
+        return target.leadingZeroBits();
+    }
+
+    public boolean isTargetReached() {
+        return targetReached;
+    }
+
+    public long getTipVersion() {
+        return tipVersion;
+    }
+
+    /**
+     * Checks the block's header as below, and that the header commits to the block's transactions.
+     */
+    ChainValidator.Problem checkHeader(final Block block) {
+        ChainValidator.Problem problem = checkHeader(block.getHeader(), System.currentTimeMillis());
+        if (problem == null && !block.commitsToTransactions()) {
+            return ChainValidator.Problem.PROOF_OF_WORK;
+        }
+        return problem;
+    }
+
+    /**
+     * Why {@code header} cannot extend this tip, or null if it can: it must take the next
+     * height, link to the tip, not precede the tip's timestamp nor run more than
+     * {@link #MAX_FUTURE_MILLIS} ahead of {@code now}, and carry a hash that recomputes from
+     * its fields and meets the target. {@link Blockchain} checks new blocks,
+     * {@link ChainValidator} stored ones and {@link LightVerifier} bare headers with this,
+     * so a block accepted live also passes at startup and on a light client.
+     */
+    ChainValidator.Problem checkHeader(final BlockHeader header, final long now) {
+        if (header.getId() != height + 1 || !lastHash.equals(header.getPreviousHash())) {
+            return ChainValidator.Problem.LINKAGE;
+        }
+        if (header.getTimestamp() < lastTimestamp || header.getTimestamp() - now > MAX_FUTURE_MILLIS) {
+            return ChainValidator.Problem.TIMESTAMP;
+        }
+        if (header.getHash().compareTo(target) > 0 || !header.computeHash().equals(header.getHash())) {
+            return ChainValidator.Problem.PROOF_OF_WORK;
+        }
+        return null;
+    }
+
+    ChainState withTip(final Block block, final boolean reached) {
+        return new ChainState(height + 1, block.getHash(), block.getTimestamp(), target, reached, tipVersion + 1);
+    }
+
+    ChainState withTarget(final Hash256 newTarget) {
+        return new ChainState(height, lastHash, lastTimestamp, newTarget, targetReached, tipVersion);
+    }
+}
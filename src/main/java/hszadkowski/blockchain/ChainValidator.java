@@ -0,0 +1,333 @@
+package hszadkowski.blockchain;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Checks a whole chain from genesis, e.g. one loaded from a {@link BlockStore} or imported
+ * from elsewhere. Only the proof-of-work targets depend on everything before a block, and
+ * replaying them is cheap, so headers and signatures are checked in parallel segments on a
+ * {@link ForkJoinPool}. Transaction ids are then checked for repeats and balances replayed
+ * in order with a {@link Ledger}. Every
+ * phase stops at the first invalid block, and later phases do not look beyond it.
+ *
+ * <p>Up to the highest {@link Checkpoint} the chain reaches, only linkage and proof of work
+ * are checked: the checkpoint hash pins everything below it, so signatures and funds there
+ * were already checked by whoever took the checkpoint.
+ */
+public final class ChainValidator {
+    // Large enough that handing out a segment costs nothing next to checking it
+    static final int SEGMENT_BLOCKS = 256;
+
+    private final ForkJoinPool pool;
+    private final long blockIntervalMillis;
+    // Every signature is checked once, so there is nothing worth caching
+    private final SignatureVerifier verifier;
+    private final Map<Integer, Hash256> checkpoints = new HashMap<>();
+
+    /**
+     * Uses the interval and checkpoints given as system properties.
+     */
+    public ChainValidator() {
+        this(ForkJoinPool.commonPool(), Retargeter.fromSystemProperties().getIntervalMillis(),
+                Checkpoint.fromSystemProperties());
+    }
+
+    /**
+     * @param blockIntervalMillis the interval the chain was retargeted towards when it was mined
+     */
+    public ChainValidator(final ForkJoinPool pool, final long blockIntervalMillis) {
+        this(pool, blockIntervalMillis, List.of());
+    }
+
+    public ChainValidator(final ForkJoinPool pool,
+                          final long blockIntervalMillis,
+                          final List<Checkpoint> checkpoints) {
+        this.pool = pool;
+        this.blockIntervalMillis = blockIntervalMillis;
+        this.verifier = new SignatureVerifier(pool, 0);
+        for (Checkpoint checkpoint : checkpoints) {
+            Hash256 other = this.checkpoints.putIfAbsent(checkpoint.getHeight(), checkpoint.getHash());
+            if (other != null && !other.equals(checkpoint.getHash())) {
+                throw new IllegalArgumentException("Conflicting checkpoints at height " + checkpoint.getHeight());
+            }
+        }
+    }
+
+    /**
+     * Why a block was found invalid.
+     */
+    public enum Problem {
+        /** Wrong id, or the previous hash is not the hash of the block before. */
+        LINKAGE,
+        /** The timestamp precedes the block before, or runs too far ahead of the clock. */
+        TIMESTAMP,
+        /** The hash differs from the checkpoint at the block's height. */
+        CHECKPOINT,
+        /** The hash does not recompute from the header, exceeds the target, or does not cover the transactions. */
+        PROOF_OF_WORK,
+        INVALID_SIGNATURE,
+        /** A transaction id appears twice in the block, or already in an earlier one. */
+        DUPLICATE_TRANSACTION,
+        /** A sender spends more than the ledger holds for it before the block. */
+        INSUFFICIENT_FUNDS
+    }
+
+    public Result validate(final List<Block> blocks) {
+        return validate(blocks, null);
+    }
+
+    /**
+     * Like {@link #validate(List)}, but balances are replayed from {@code snapshot} instead of
+     * from genesis if it was taken on {@code blocks}. Funds below it are not checked again:
+     * the snapshot was only written after those blocks were accepted.
+     *
+     * @param snapshot e.g. from {@link LedgerSnapshots#loadNewest}, or null
+     */
+    public Result validate(final List<Block> blocks, final LedgerSnapshots.Snapshot snapshot) {
+        long start = System.nanoTime();
+        Hash256[] targets = replayTargets(blocks);
+        int invalid = firstFailure(0, blocks.size(), i -> checkHeader(blocks, targets, i) == null);
+
+        // Only a checkpoint the chain actually matched vouches for the blocks below it
+        int trusted = trustedHeight(invalid);
+        long signing = System.nanoTime();
+        invalid = firstFailure(trusted, invalid, i -> verifier.findInvalid(blocks.get(i).getTransactions()) == null);
+        long signatureNanos = System.nanoTime() - signing;
+        int signed = invalid;
+        invalid = firstRepeat(blocks, signed);
+
+        Ledger ledger = new Ledger();
+        int height = 0;
+        if (snapshot != null && isTakenOn(snapshot, blocks, invalid)) {
+            ledger.load(snapshot.getHeight(), snapshot.getBalances());
+            height = snapshot.getHeight();
+        }
+        while (height < invalid && (height < trusted || ledger.canAfford(blocks.get(height)))) {
+            ledger.apply(blocks.get(height));
+            height++;
+        }
+
+        Problem problem = null;
+        if (height < blocks.size()) {
+            problem = checkHeader(blocks, targets, height);
+            if (problem == null) {
+                if (height < invalid) {
+                    problem = Problem.INSUFFICIENT_FUNDS;
+                } else {
+                    problem = height < signed ? Problem.DUPLICATE_TRANSACTION : Problem.INVALID_SIGNATURE;
+                }
+            }
+        }
+        return new Result(blocks.size(), height, problem, System.nanoTime() - start, trusted,
+                countSigned(blocks, 0, trusted), countSigned(blocks, trusted, invalid), signatureNanos);
+    }
+
+    /**
+     * @return the index of the first of the first {@code limit} blocks that repeats a
+     *         transaction id, within itself or from an earlier block, or {@code limit}
+     */
+    private static int firstRepeat(final List<Block> blocks, final int limit) {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < limit; i++) {
+            for (Transaction tx : blocks.get(i).getTransactions()) {
+                // Award transactions all share id 0
+                if (!tx.isAwardTransaction() && !ids.add(tx.getTransactionId())) {
+                    return i;
+                }
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * @return whether {@code snapshot} was taken within the first {@code length} blocks
+     */
+    private static boolean isTakenOn(final LedgerSnapshots.Snapshot snapshot,
+                                     final List<Block> blocks,
+                                     final int length) {
+        int height = snapshot.getHeight();
+        return height >= 1 && height <= length && blocks.get(height - 1).getHash().equals(snapshot.getTipHash());
+    }
+
+    /**
+     * @return the highest checkpoint height within the first {@code length} blocks, or 0
+     */
+    private int trustedHeight(final int length) {
+        int trusted = 0;
+        for (int height : checkpoints.keySet()) {
+            if (height <= length) {
+                trusted = Math.max(trusted, height);
+            }
+        }
+        return trusted;
+    }
+
+    private static long countSigned(final List<Block> blocks, final int from, final int to) {
+        long signed = 0;
+        for (int i = from; i < to; i++) {
+            for (Transaction tx : blocks.get(i).getTransactions()) {
+                if (!tx.isAwardTransaction()) {
+                    signed++;
+                }
+            }
+        }
+        return signed;
+    }
+
+    /**
+     * @return the target each block had to meet; cheap, but inherently sequential
+     */
+    private Hash256[] replayTargets(final List<Block> blocks) {
+        Retargeter retargeter = new Retargeter(blockIntervalMillis, Retargeter.DEFAULT_WINDOW);
+        Hash256[] targets = new Hash256[blocks.size()];
+        Hash256 target = ChainState.GENESIS.getTarget();
+        long previousTimestamp = 0;
+        for (int i = 0; i < targets.length; i++) {
+            Block block = blocks.get(i);
+            targets[i] = target;
+            target = retargeter.record(target,
+                    retargeter.blockMillis(block.getId(), previousTimestamp, block.getTimestamp()));
+            previousTimestamp = block.getTimestamp();
+        }
+        return targets;
+    }
+
+    /**
+     * Tests blocks {@code from .. limit - 1} in parallel segments, each scanned in order.
+     *
+     * @return the index of the first block that fails, or {@code limit}
+     */
+    private int firstFailure(final int from, final int limit, final IntPredicate valid) {
+        AtomicInteger first = new AtomicInteger(limit);
+        int segments = (limit - from + SEGMENT_BLOCKS - 1) / SEGMENT_BLOCKS;
+        pool.submit(() -> IntStream.range(0, segments).parallel().forEach(segment -> {
+            int end = Math.min(limit, from + (segment + 1) * SEGMENT_BLOCKS);
+            // Segments behind a known failure stop, or never start
+            for (int i = from + segment * SEGMENT_BLOCKS; i < end && i < first.get(); i++) {
+                if (!valid.test(i)) {
+                    first.accumulateAndGet(i, Math::min);
+                    return;
+                }
+            }
+        })).join();
+        return first.get();
+    }
+
+    private Problem checkHeader(final List<Block> blocks, final Hash256[] targets, final int index) {
+        Block block = blocks.get(index);
+        ChainState parent = index == 0 ? ChainState.GENESIS.withTarget(targets[index])
+                : new ChainState(index, blocks.get(index - 1).getHash(), blocks.get(index - 1).getTimestamp(),
+                        targets[index], false, 0);
+        Problem problem = parent.checkHeader(block);
+        if (problem == Problem.LINKAGE) {
+            return problem;
+        }
+        Hash256 pinned = checkpoints.get(block.getId());
+        if (pinned != null && !pinned.equals(block.getHash())) {
+            return Problem.CHECKPOINT;
+        }
+        return problem;
+    }
+
+    /**
+     * The outcome of {@link #validate}: how far the chain is valid, and how fast it was checked.
+     */
+    public static final class Result {
+        private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+        private final int blocks;
+        private final int validBlocks;
+        private final Problem problem;
+        private final long elapsedNanos;
+        private final int trustedBlocks;
+        private final long skippedSignatures;
+        private final long verifiedSignatures;
+        private final long signatureNanos;
+
+        Result(final int blocks,
+               final int validBlocks,
+               final Problem problem,
+               final long elapsedNanos,
+               final int trustedBlocks,
+               final long skippedSignatures,
+               final long verifiedSignatures,
+               final long signatureNanos) {
+            this.blocks = blocks;
+            this.validBlocks = validBlocks;
+            this.problem = problem;
+            this.elapsedNanos = elapsedNanos;
+            this.trustedBlocks = trustedBlocks;
+            this.skippedSignatures = skippedSignatures;
+            this.verifiedSignatures = verifiedSignatures;
+            this.signatureNanos = signatureNanos;
+        }
+
+        public boolean isValid() {
+            return problem == null;
+        }
+
+        public int getBlocks() {
+            return blocks;
+        }
+
+        /**
+         * How many blocks from genesis passed every check.
+         */
+        public int getValidBlocks() {
+            return validBlocks;
+        }
+
+        /**
+         * @return the id of the first invalid block, or -1 if the whole chain is valid
+         */
+        public int getFirstInvalidId() {
+            return isValid() ? -1 : validBlocks + 1;
+        }
+
+        /**
+         * @return what is wrong with the first invalid block, or null
+         */
+        public Problem getProblem() {
+            return problem;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getBlocksPerSecond() {
+            return validBlocks * NANOS_PER_SECOND / Math.max(1, elapsedNanos);
+        }
+
+        /**
+         * How many blocks from genesis were covered by a checkpoint and had their signatures skipped.
+         */
+        public int getTrustedBlocks() {
+            return trustedBlocks;
+        }
+
+        public long getSkippedSignatures() {
+            return skippedSignatures;
+        }
+
+        public long getVerifiedSignatures() {
+            return verifiedSignatures;
+        }
+
+        /**
+         * The skipped signatures priced at what the verified ones cost per signature; 0 when
+         * nothing was verified to measure against.
+         */
+        public long getEstimatedSavedNanos() {
+            return verifiedSignatures == 0 ? 0 : skippedSignatures * signatureNanos / verifiedSignatures;
+        }
+    }
+}
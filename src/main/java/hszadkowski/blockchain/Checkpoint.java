@@ -0,0 +1,67 @@
+package hszadkowski.blockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A block hash trusted at a given height. Since every block commits to its parent's hash, a
+ * chain that matches a checkpoint has the same history up to it as the one it was taken from,
+ * and {@link ChainValidator} does not re-verify signatures there.
+ */
+public final class Checkpoint {
+    // Set -Dblockchain.checkpoints=<height>:<hash>,... to trust known chains
+    public static final String CHECKPOINTS_PROPERTY = "blockchain.checkpoints";
+
+    private final int height;
+    private final Hash256 hash;
+
+    public Checkpoint(final int height, final Hash256 hash) {
+        if (height < 1) {
+            throw new IllegalArgumentException("Checkpoint height must be positive: " + height);
+        }
+        this.height = height;
+        this.hash = hash;
+    }
+
+    /**
+     * Parses {@code height:hash}, with the hash in hex.
+     */
+    public static Checkpoint parse(final String text) {
+        int colon = text.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Expected <height>:<hash>, not " + text);
+        }
+        return new Checkpoint(Integer.parseInt(text.substring(0, colon).trim()),
+                Hash256.fromHex(text.substring(colon + 1).trim()));
+    }
+
+    /**
+     * Parses a comma-separated list of checkpoints; blank input means none.
+     */
+    public static List<Checkpoint> parseAll(final String text) {
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        for (String part : text.split(",")) {
+            if (!part.isBlank()) {
+                checkpoints.add(parse(part));
+            }
+        }
+        return checkpoints;
+    }
+
+    public static List<Checkpoint> fromSystemProperties() {
+        return parseAll(System.getProperty(CHECKPOINTS_PROPERTY, ""));
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Hash256 getHash() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return height + ":" + hash;
+    }
+}
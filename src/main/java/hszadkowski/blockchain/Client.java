@@ -3,7 +3,6 @@ package hszadkowski.blockchain;
 import java.nio.charset.StandardCharsets;
 
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.PrivateKey;
@@ -14,17 +13,17 @@ public final class Client {
     static final AtomicLong ID_GENERATOR = new AtomicLong(1);
 
     private final String name;
+    private final SignatureScheme scheme;
     private final KeyPair keyPair;
 
     public Client(final String name) throws NoSuchAlgorithmException {
-        this.name = name;
-        this.keyPair = generateKeyPair();
+        this(name, SignatureScheme.RSA);
     }
 
-    private KeyPair generateKeyPair() throws NoSuchAlgorithmException {
-        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-        keyGen.initialize(1024);
-        return keyGen.generateKeyPair();
+    public Client(final String name, final SignatureScheme scheme) throws NoSuchAlgorithmException {
+        this.name = name;
+        this.scheme = scheme;
+        this.keyPair = scheme.generateKeyPair();
     }
 
     public Transaction createTransaction(final String from, final String to, final long amt) throws Exception {
@@ -32,14 +31,18 @@ public final class Client {
         String dataToSign = from + to + amt + txId;
         byte[] signature = sign(dataToSign.getBytes(StandardCharsets.UTF_8));
 
-        return new Transaction(from, to, amt, txId, signature, keyPair.getPublic());
+        return new Transaction(from, to, amt, txId, signature, keyPair.getPublic(), scheme);
     }
 
     private byte[] sign(final byte[] data) throws Exception {
-        Signature rsa = Signature.getInstance("SHA256withRSA");
-        rsa.initSign(keyPair.getPrivate());
-        rsa.update(data);
-        return rsa.sign();
+        Signature signer = scheme.newSignature();
+        signer.initSign(keyPair.getPrivate());
+        signer.update(data);
+        return signer.sign();
+    }
+
+    public SignatureScheme getScheme() {
+        return scheme;
     }
 
     public String getName() {
@@ -0,0 +1,53 @@
+package hszadkowski.blockchain;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * Prints chain events the way the simulation always has.
+ */
+public final class ConsoleListener implements BlockchainListener {
+    private final PrintStream out;
+
+    public ConsoleListener() {
+        this(System.out);
+    }
+
+    public ConsoleListener(final PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void onBlockAccepted(final Block block) {
+        out.println(block);
+    }
+
+    @Override
+    public void onTransactionRejected(final Transaction transaction, final AdmissionResult reason) {
+        switch (reason) {
+            case INVALID_SIGNATURE -> out.println("Rejected invalid signature for transaction: " + transaction);
+            case INSUFFICIENT_FUNDS -> out.println("Rejected transaction (insufficient funds): " + transaction);
+            case DUPLICATE -> out.println("Rejected duplicate transaction: " + transaction);
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void onDifficultyAdjusted(final Hash256 previous, final Hash256 next, final long blockMillis) {
+        String bits = String.format(Locale.ROOT, "%.2f bits", Retargeter.difficultyBits(next));
+        int change = next.compareTo(previous);
+        if (change < 0) {
+            out.println("N was increased to " + bits + "\n");
+        } else if (change > 0) {
+            out.println("N was decreased to " + bits + "\n");
+        } else {
+            out.println("N stays the same (" + bits + ")\n");
+        }
+    }
+
+    @Override
+    public void onSnapshotFailed(final int height, final Throwable cause) {
+        out.println("Could not write the ledger snapshot at height " + height + ": " + cause.getMessage());
+    }
+}
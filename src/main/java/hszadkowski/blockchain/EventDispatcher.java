@@ -0,0 +1,108 @@
+package hszadkowski.blockchain;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Hands chain events to listeners on one background thread through a bounded queue.
+ * Publishing never blocks: with no listeners it does nothing, and when the queue is full
+ * the event is dropped and counted, so slow listeners cannot stall block acceptance.
+ * A listener that throws is counted as well and does not keep the others from the event.
+ * Events only capture references; rendering them is left to the listeners.
+ */
+public final class EventDispatcher implements Closeable {
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private static final Consumer<BlockchainListener> STOP = listener -> { };
+
+    private final BlockingQueue<Consumer<BlockchainListener>> queue;
+    private final List<BlockchainListener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private Thread worker;
+    private volatile boolean closed;
+
+    public EventDispatcher() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EventDispatcher(final int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Registers a listener; the dispatch thread is started with the first one.
+     */
+    public synchronized void subscribe(final BlockchainListener listener) {
+        if (closed) {
+            throw new IllegalStateException("Event dispatcher is closed");
+        }
+        listeners.add(listener);
+        if (worker == null) {
+            worker = Workers.ioThreadFactory().newThread(this::dispatch);
+            worker.setName("blockchain-events");
+            worker.start();
+        }
+    }
+
+    void publish(final Consumer<BlockchainListener> event) {
+        if (closed || listeners.isEmpty()) {
+            return;
+        }
+        if (!queue.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void dispatch() {
+        try {
+            for (Consumer<BlockchainListener> event = queue.take(); event != STOP; event = queue.take()) {
+                for (BlockchainListener listener : listeners) {
+                    try {
+                        event.accept(listener);
+                    } catch (RuntimeException e) {
+                        failed.increment();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Number of deliveries in which a listener threw.
+     */
+    public long getFailedDeliveries() {
+        return failed.sum();
+    }
+
+    /**
+     * Stops accepting events and waits until the queued ones have been delivered.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (worker == null) {
+            return;
+        }
+        try {
+            queue.put(STOP);
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package hszadkowski.blockchain;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An immutable SHA-256 digest held as four longs rather than a 64-character hex string.
+ * Equality does not stop at the first differing word, and the hex form is only built,
+ * then kept, when a hash is displayed. Hashes order as unsigned 256-bit numbers, which is
+ * how a block hash is checked against a proof-of-work target.
+ */
+public final class Hash256 implements Comparable<Hash256> {
+    public static final int LENGTH = Sha256.DIGEST_LENGTH;
+    public static final Hash256 ZERO = new Hash256(0L, 0L, 0L, 0L);
+    public static final Hash256 MAX = new Hash256(-1L, -1L, -1L, -1L);
+
+    private static final int WORDS = LENGTH / Long.BYTES;
+    private static final int HEX_LENGTH = 2 * LENGTH;
+    private static final int HEX_RADIX = 16;
+    private static final int BITS_PER_NIBBLE = 4;
+    private static final int NIBBLE_MASK = 0xf;
+    private static final int NIBBLES_PER_WORD = Long.SIZE / BITS_PER_NIBBLE;
+    private static final int INTS_PER_WORD = Long.BYTES / Integer.BYTES;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
+    // Racy but benign: every thread that renders computes the same immutable String
+    private String hex;
+
+    private Hash256(final long w0, final long w1, final long w2, final long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    public static Hash256 of(final byte[] digest) {
+        if (digest.length != LENGTH) {
+            throw new IllegalArgumentException("A digest has " + LENGTH + " bytes, not " + digest.length);
+        }
+        return read(ByteBuffer.wrap(digest));
+    }
+
+    /**
+     * Reads 32 bytes at the buffer's position and leaves the position behind them.
+     */
+    public static Hash256 read(final ByteBuffer in) {
+        return new Hash256(in.getLong(), in.getLong(), in.getLong(), in.getLong());
+    }
+
+    /**
+     * Parses exactly 64 hex digits, in either case.
+     */
+    public static Hash256 fromHex(final String text) {
+        if (text.length() != HEX_LENGTH) {
+            throw new IllegalArgumentException("A hash has " + HEX_LENGTH + " hex digits: " + text);
+        }
+        long[] words = new long[WORDS];
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            int digit = Character.digit(text.charAt(i), HEX_RADIX);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not a hex digit at " + i + ": " + text);
+            }
+            words[i / NIBBLES_PER_WORD] = (words[i / NIBBLES_PER_WORD] << BITS_PER_NIBBLE) | digit;
+        }
+        return of(words);
+    }
+
+    /**
+     * The largest hash with at least {@code bits} leading zero bits, i.e. the target that
+     * {@code bits / 4} leading zero hex digits used to stand for.
+     */
+    public static Hash256 withLeadingZeros(final int bits) {
+        if (bits < 0 || bits > Long.SIZE * WORDS) {
+            throw new IllegalArgumentException("Leading zero bits out of range: " + bits);
+        }
+        long[] words = new long[WORDS];
+        for (int i = 0; i < words.length; i++) {
+            int zeros = Math.max(0, Math.min(Long.SIZE, bits - i * Long.SIZE));
+            words[i] = zeros == Long.SIZE ? 0L : -1L >>> zeros;
+        }
+        return of(words);
+    }
+
+    private static Hash256 of(final long[] words) {
+        int i = 0;
+        return new Hash256(words[i++], words[i++], words[i++], words[i]);
+    }
+
+    public void writeTo(final ByteBuffer out) {
+        out.putLong(w0).putLong(w1).putLong(w2).putLong(w3);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(LENGTH);
+        writeTo(out);
+        return out.array();
+    }
+
+    public int leadingZeroBits() {
+        if (w0 != 0) {
+            return Long.numberOfLeadingZeros(w0);
+        }
+        if (w1 != 0) {
+            return Long.SIZE + Long.numberOfLeadingZeros(w1);
+        }
+        if (w2 != 0) {
+            return 2 * Long.SIZE + Long.numberOfLeadingZeros(w2);
+        }
+        return (WORDS - 1) * Long.SIZE + Long.numberOfLeadingZeros(w3);
+    }
+
+    /**
+     * Whether the hex form starts with {@code nibbles} zeros, without rendering it.
+     */
+    public boolean hasLeadingZeroNibbles(final int nibbles) {
+        return leadingZeroBits() >= BITS_PER_NIBBLE * nibbles;
+    }
+
+    /**
+     * Whether a raw digest, read as an unsigned big-endian number, does not exceed this target.
+     */
+    public boolean isMetBy(final byte[] digest) {
+        long word = (long) LONGS.get(digest, 0);
+        if (word != w0) {
+            return Long.compareUnsigned(word, w0) < 0;
+        }
+        word = (long) LONGS.get(digest, Long.BYTES);
+        if (word != w1) {
+            return Long.compareUnsigned(word, w1) < 0;
+        }
+        word = (long) LONGS.get(digest, 2 * Long.BYTES);
+        if (word != w2) {
+            return Long.compareUnsigned(word, w2) < 0;
+        }
+        return Long.compareUnsigned((long) LONGS.get(digest, (WORDS - 1) * Long.BYTES), w3) <= 0;
+    }
+
+    /**
+     * Big-endian 32-bit word {@code index} (0 to 7), as SHA-256 produces them.
+     */
+    int intWord(final int index) {
+        int longIndex = index / INTS_PER_WORD;
+        long word = longIndex == 0 ? w0 : longIndex == 1 ? w1 : longIndex == 2 ? w2 : w3;
+        return (int) (index % INTS_PER_WORD == 0 ? word >>> Integer.SIZE : word);
+    }
+
+    @Override
+    public int compareTo(final Hash256 other) {
+        int c = Long.compareUnsigned(w0, other.w0);
+        if (c == 0) {
+            c = Long.compareUnsigned(w1, other.w1);
+        }
+        if (c == 0) {
+            c = Long.compareUnsigned(w2, other.w2);
+        }
+        return c == 0 ? Long.compareUnsigned(w3, other.w3) : c;
+    }
+
+    /**
+     * Compares all four words whatever their contents, so the time taken does not reveal
+     * how long a common prefix is.
+     */
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof Hash256)) {
+            return false;
+        }
+        Hash256 other = (Hash256) o;
+        return ((w0 ^ other.w0) | (w1 ^ other.w1) | (w2 ^ other.w2) | (w3 ^ other.w3)) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        // The leading words of a proof-of-work hash are mostly zero, the last one is not
+        return Long.hashCode(w3);
+    }
+
+    @Override
+    public String toString() {
+        String text = hex;
+        if (text == null) {
+            char[] chars = new char[HEX_LENGTH];
+            int offset = render(w0, chars, 0);
+            offset = render(w1, chars, offset);
+            offset = render(w2, chars, offset);
+            render(w3, chars, offset);
+            text = new String(chars);
+            hex = text;
+        }
+        return text;
+    }
+
+    /**
+     * Writes the 16 hex digits of {@code word} and returns the offset behind them.
+     */
+    private static int render(final long word, final char[] out, final int offset) {
+        for (int i = 0; i < NIBBLES_PER_WORD; i++) {
+            out[offset + i] = HEX_DIGITS[(int) (word >>> (Long.SIZE - BITS_PER_NIBBLE * (i + 1))) & NIBBLE_MASK];
+        }
+        return offset + NIBBLES_PER_WORD;
+    }
+}
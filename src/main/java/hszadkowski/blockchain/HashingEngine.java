@@ -0,0 +1,174 @@
+package hszadkowski.blockchain;
+
+import java.util.List;
+
+/**
+ * Proof-of-work hashing for one mining thread. The {@link BlockHeader} minus its nonce is
+ * serialized once per template and compressed into a midstate; every attempt then
+ * only hashes the four nonce bytes on top of a copy of that state.
+ *
+ * <p>When the build includes the vector backend ({@code -Pvector}), the JVM runs with
+ * {@code --add-modules jdk.incubator.vector} and the CPU has wide enough SIMD registers,
+ * {@link #tryNonces} hashes 4 to 16 nonces at once. A probe picks this backend at startup after
+ * checking it against the scalar path; {@code -Dblockchain.vectorHashing=false} turns it off.
+ */
+public final class HashingEngine {
+    public static final String VECTOR_HASHING_PROPERTY = "blockchain.vectorHashing";
+    // Compiled only by the vector profile, so it is looked up rather than linked
+    static final String VECTOR_BACKEND = "hszadkowski.blockchain.VectorLaneHasher";
+
+    private static final boolean VECTORIZED =
+            probeVectorSupport(System.getProperty(VECTOR_HASHING_PROPERTY, "true"), VECTOR_BACKEND);
+    private static final ThreadLocal<HashingEngine> ENGINES = ThreadLocal.withInitial(HashingEngine::new);
+
+    private final Sha256 midstate = new Sha256();
+    private final Sha256 work = new Sha256();
+    private final byte[] digest = new byte[Sha256.DIGEST_LENGTH];
+    private final LaneHasher lanes;
+
+    HashingEngine() {
+        this(VECTORIZED ? loadVectorBackend() : null);
+    }
+
+    /**
+     * @param lanes the multi-nonce backend, or null to hash every nonce on the scalar path
+     */
+    HashingEngine(final LaneHasher lanes) {
+        this.lanes = lanes;
+    }
+
+    public static HashingEngine forCurrentThread() {
+        return ENGINES.get();
+    }
+
+    public void prepare(final byte[] headerPrefix) {
+        midstate.reset();
+        midstate.update(headerPrefix);
+        if (lanes != null) {
+            lanes.prepare(midstate);
+        }
+    }
+
+    /**
+     * @return how many nonces {@link #tryNonces} can hash in one pass
+     */
+    public int getLanes() {
+        return lanes == null ? 1 : lanes.width();
+    }
+
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Hashes the prepared header with {@code nonce} and reports whether the digest,
+     * as a 256-bit number, does not exceed {@code target}.
+     */
+    public boolean tryNonce(final int nonce, final Hash256 target) {
+        work.copyFrom(midstate);
+        work.updateInt(nonce);
+        work.digest(digest);
+        return target.isMetBy(digest);
+    }
+
+    /**
+     * Tries {@code count} consecutive nonces from {@code firstNonce}, at most {@link #getLanes()}.
+     * Afterwards {@link #lastHashHex()} is the hash of the solving nonce, if any.
+     *
+     * @return the offset of the first nonce that solves the header, or -1
+     */
+    public int tryNonces(final int firstNonce, final int count, final Hash256 target) {
+        if (lanes != null && count == lanes.width()) {
+            return lanes.search(firstNonce, target, digest);
+        }
+        for (int i = 0; i < count; i++) {
+            if (tryNonce(firstNonce + i, target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public Hash256 lastHash() {
+        return Hash256.of(digest);
+    }
+
+    public String lastHashHex() {
+        return StringUtil.toHex(digest);
+    }
+
+    /**
+     * Selects the vector backend when it is enabled, built in, the incubator module is present, the
+     * CPU has enough int lanes and the backend agrees with {@link Sha256}.
+     */
+    static boolean probeVectorSupport(final String setting, final String backend) {
+        if (!Boolean.parseBoolean(setting)) {
+            return false;
+        }
+        LaneHasher hasher = loadBackend(backend);
+        return hasher != null && agreesWithScalar(hasher);
+    }
+
+    /**
+     * @return a new vector backend, or null if it is not built in, cannot link or would not pay off
+     */
+    static LaneHasher loadVectorBackend() {
+        return loadBackend(VECTOR_BACKEND);
+    }
+
+    /**
+     * @return the lane hasher made by {@code backend}'s static {@code createIfAccelerated()}, or null
+     */
+    static LaneHasher loadBackend(final String backend) {
+        try {
+            return (LaneHasher) Class.forName(backend).getDeclaredMethod("createIfAccelerated").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not compiled in, or jdk.incubator.vector is not in the module graph
+            return null;
+        }
+    }
+
+    /**
+     * Hashes a sample header on both paths, once solved in the first lane and once practically
+     * unsolved, which leaves the digest of the last lane.
+     */
+    static boolean agreesWithScalar(final LaneHasher hasher) {
+        byte[] prefix = BlockHeader.prefix(1, Hash256.ZERO, new byte[Sha256.DIGEST_LENGTH], 0L, 0L);
+        HashingEngine scalar = new HashingEngine(null);
+        HashingEngine vector = new HashingEngine(hasher);
+        scalar.prepare(prefix);
+        vector.prepare(prefix);
+        for (Hash256 target : new Hash256[] {Hash256.MAX, Hash256.ZERO}) {
+            int expected = scalar.tryNonces(0, hasher.width(), target);
+            String expectedHash = scalar.lastHashHex();
+            if (vector.tryNonces(0, hasher.width(), target) != expected
+                    || !expectedHash.equals(vector.lastHashHex())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the Merkle tree over {@code transactions} and serializes the resulting
+     * {@link BlockHeader} up to the nonce. Miners keep the tree and call
+     * {@link BlockHeader#prefix(int, Hash256, byte[], long, long)} directly instead.
+     */
+    public static byte[] headerPrefix(final int id,
+                                      final Hash256 previousHash,
+                                      final List<Transaction> transactions,
+                                      final long timestamp,
+                                      final long extraNonce) {
+        return BlockHeader.prefix(id, previousHash, MerkleTree.of(transactions).getRoot(), timestamp, extraNonce);
+    }
+
+    /**
+     * Full header hash, for checking a block outside the mining loop.
+     */
+    public static Hash256 hashHeader(final byte[] headerPrefix, final int nonce) {
+        Sha256 sha = new Sha256();
+        sha.update(headerPrefix);
+        sha.updateInt(nonce);
+        return Hash256.of(sha.digest());
+    }
+}
@@ -0,0 +1,56 @@
+package hszadkowski.blockchain;
+
+/**
+ * Evidence that a transaction is part of a block: the block's header and the Merkle path
+ * from the transaction's leaf to the header's root. Its size grows with the logarithm of
+ * the block's transaction count, not with the block itself.
+ */
+public final class InclusionProof {
+    private final BlockHeader header;
+    private final Transaction transaction;
+    private final int index;
+    private final byte[][] path;
+
+    public InclusionProof(final BlockHeader header,
+                          final Transaction transaction,
+                          final int index,
+                          final byte[][] path) {
+        this.header = header;
+        this.transaction = transaction;
+        this.index = index;
+        this.path = copy(path);
+    }
+
+    public BlockHeader getHeader() {
+        return header;
+    }
+
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public byte[][] getPath() {
+        return copy(path);
+    }
+
+    /**
+     * Whether the path leads from the transaction, at a real leaf index, to the Merkle root in
+     * the header. This says nothing about the header itself; {@link LightVerifier} checks that.
+     */
+    public boolean isConsistent() {
+        byte[] root = MerkleTree.rootFromPath(transaction, index, path);
+        return root != null && header.hasMerkleRoot(root);
+    }
+
+    private static byte[][] copy(final byte[][] path) {
+        byte[][] copy = new byte[path.length][];
+        for (int i = 0; i < path.length; i++) {
+            copy[i] = path[i].clone();
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,88 @@
+package hszadkowski.blockchain;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes every registered gauge as a read-only attribute of one MBean, so the metrics
+ * show up in JConsole or JMC under {@link #DEFAULT_NAME}.
+ */
+public final class JmxMetricsRegistry implements MetricsRegistry, DynamicMBean {
+    public static final String DEFAULT_NAME = "hszadkowski.blockchain:type=Metrics";
+
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Creates a registry and registers it with the platform MBean server under {@code name}.
+     */
+    public static JmxMetricsRegistry register(final String name) throws JMException {
+        JmxMetricsRegistry registry = new JmxMetricsRegistry();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(registry, new ObjectName(name));
+        return registry;
+    }
+
+    @Override
+    public void gauge(final String name, final DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        DoubleSupplier gauge = gauges.get(attribute);
+        if (gauge == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return gauge.getAsDouble();
+    }
+
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        AttributeList values = new AttributeList();
+        for (String attribute : attributes) {
+            DoubleSupplier gauge = gauges.get(attribute);
+            if (gauge != null) {
+                values.add(new Attribute(attribute, gauge.getAsDouble()));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metric " + attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature)
+            throws ReflectionException {
+        // Metrics have no operations
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attributes = gauges.keySet().stream()
+                .map(name -> new MBeanAttributeInfo(name, "double", name, true, false, false))
+                .toArray(MBeanAttributeInfo[]::new);
+        return new MBeanInfo(getClass().getName(), "Blockchain metrics", attributes, null,
+                new MBeanOperationInfo[0], null);
+    }
+}
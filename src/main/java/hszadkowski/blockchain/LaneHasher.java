@@ -0,0 +1,26 @@
+package hszadkowski.blockchain;
+
+/**
+ * Hashes one prepared header with several consecutive nonces in a single pass.
+ */
+interface LaneHasher {
+
+    /**
+     * @return how many nonces one {@link #search} covers
+     */
+    int width();
+
+    /**
+     * Takes over the midstate of the header prefix; {@code midstate} itself is left untouched.
+     */
+    void prepare(Sha256 midstate);
+
+    /**
+     * Hashes the nonces {@code firstNonce .. firstNonce + width() - 1} and writes the digest of
+     * the first one that does not exceed {@code target}, or of the last nonce if none does,
+     * into {@code digest}.
+     *
+     * @return the offset of the solving nonce from {@code firstNonce}, or -1
+     */
+    int search(int firstNonce, Hash256 target, byte[] digest);
+}
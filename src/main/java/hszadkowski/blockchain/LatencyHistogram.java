@@ -0,0 +1,74 @@
+package hszadkowski.blockchain;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram with power-of-two buckets. Recording touches only striped counters, so it
+ * neither locks nor allocates once a thread has its counter cells. Percentiles are
+ * reported as the upper bound of the bucket they fall in, so they are exact to within
+ * a factor of two, which is enough to spot latency shifts.
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = Long.SIZE;
+    private static final double PERCENT = 100.0;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a non-negative value; negative ones are counted as zero.
+     */
+    public void record(final long value) {
+        long v = Math.max(0, value);
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(v)].increment();
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0.0 : (double) sum.sum() / n;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return an upper bound of the value below which {@code percentile} percent of the records fall
+     */
+    public long getPercentile(final double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / PERCENT * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return Math.min(getMax(), upperBound(i));
+            }
+        }
+        return getMax();
+    }
+
+    private static long upperBound(final int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+}
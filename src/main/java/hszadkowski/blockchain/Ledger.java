@@ -0,0 +1,211 @@
+package hszadkowski.blockchain;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incrementally maintained account balances. Every accepted block is applied once,
+ * so current balances are an O(1) lookup and historical balances a binary search.
+ * Accounts are kept in an array indexed by their {@link AccountRegistry} id.
+ * Not thread-safe on its own: {@link Blockchain} guards it with its monitor.
+ */
+public final class Ledger {
+    static final String AWARD_SENDER = "BLOCKCHAIN";
+    static final long INITIAL_BALANCE = 100;
+    private static final int INITIAL_ACCOUNTS = 64;
+
+    private final AccountRegistry registry = AccountRegistry.shared();
+    // Null for accounts no applied block has touched
+    private AccountHistory[] accounts = new AccountHistory[INITIAL_ACCOUNTS];
+    private int touched = 0;
+    // Scratch space for canAfford, by sender id; all zero between calls
+    private long[] spent = new long[INITIAL_ACCOUNTS];
+    private int height = 0;
+    // Height of the snapshot this ledger was loaded from; no history is kept below it
+    private int baseHeight = 0;
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getBalance(final String user) {
+        return getBalance(registry.find(user));
+    }
+
+    long getBalance(final int accountId) {
+        if (accountId == AccountRegistry.AWARD_ID) {
+            return Long.MAX_VALUE;
+        }
+        AccountHistory history = history(accountId);
+        return history == null ? INITIAL_BALANCE : history.latest();
+    }
+
+    /**
+     * Balance of {@code user} after the first {@code atHeight} blocks were applied.
+     * Height 0 is the state before the genesis block.
+     */
+    public long getBalanceAt(final String user, final int atHeight) {
+        int accountId = registry.find(user);
+        if (accountId == AccountRegistry.AWARD_ID) {
+            return Long.MAX_VALUE;
+        }
+        if (atHeight < baseHeight) {
+            throw new IllegalArgumentException(atHeight < 0 ? "Height must not be negative: " + atHeight
+                    : "No balances before the snapshot at height " + baseHeight);
+        }
+        AccountHistory history = history(accountId);
+        return history == null ? INITIAL_BALANCE : history.at(atHeight);
+    }
+
+    private AccountHistory history(final int accountId) {
+        return accountId >= 0 && accountId < accounts.length ? accounts[accountId] : null;
+    }
+
+    /**
+     * The latest balance of every account that has been touched.
+     */
+    public Map<String, Long> balances() {
+        Map<String, Long> balances = new HashMap<>(touched * 2);
+        for (int id = 0; id < accounts.length; id++) {
+            if (accounts[id] != null) {
+                balances.put(registry.nameOf(id), accounts[id].latest());
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Replaces all state with balances captured at {@code atHeight}, e.g. from a
+     * {@link LedgerSnapshots snapshot}. Blocks after it are then applied as usual.
+     */
+    public void load(final int atHeight, final Map<String, Long> balances) {
+        accounts = new AccountHistory[INITIAL_ACCOUNTS];
+        touched = 0;
+        height = atHeight;
+        baseHeight = atHeight;
+        for (Map.Entry<String, Long> entry : balances.entrySet()) {
+            account(registry.idOf(entry.getKey())).record(atHeight, entry.getValue());
+        }
+    }
+
+    public void apply(final Block block) {
+        height++;
+        for (Transaction tx : block.getTransactions()) {
+            if (!tx.isAwardTransaction()) {
+                credit(tx.getFromId(), -tx.getAmount());
+            }
+            credit(tx.getToId(), tx.getAmount());
+        }
+    }
+
+    /**
+     * Whether every sender in {@code block} holds enough for all it spends there together.
+     * Only asked of blocks whose proof of work and signatures already passed, so registering
+     * their senders is as good as applying them.
+     */
+    boolean canAfford(final Block block) {
+        boolean funded = true;
+        for (Transaction tx : block.getTransactions()) {
+            if (!tx.isAwardTransaction()) {
+                int sender = tx.getFromId();
+                if (sender >= spent.length) {
+                    spent = Arrays.copyOf(spent, Math.max(sender + 1, spent.length * 2));
+                }
+                spent[sender] += tx.getAmount();
+                funded &= spent[sender] <= getBalance(sender);
+            }
+        }
+        for (Transaction tx : block.getTransactions()) {
+            if (!tx.isAwardTransaction()) {
+                spent[tx.getFromId()] = 0;
+            }
+        }
+        return funded;
+    }
+
+    private void credit(final int accountId, final long delta) {
+        AccountHistory history = account(accountId);
+        history.record(height, history.latest() + delta);
+    }
+
+    private AccountHistory account(final int accountId) {
+        if (accountId >= accounts.length) {
+            accounts = Arrays.copyOf(accounts, Math.max(accountId + 1, accounts.length * 2));
+        }
+        AccountHistory history = accounts[accountId];
+        if (history == null) {
+            history = new AccountHistory();
+            accounts[accountId] = history;
+            touched++;
+        }
+        return history;
+    }
+
+    /**
+     * Recomputes every balance from scratch and compares it against the incremental state.
+     */
+    public boolean isConsistentWith(final List<Block> blocks) {
+        if (blocks.size() != height) {
+            return false;
+        }
+        long[] rescanned = new long[registry.size()];
+        boolean[] seen = new boolean[rescanned.length];
+        for (Block block : blocks) {
+            for (Transaction tx : block.getTransactions()) {
+                if (!tx.isAwardTransaction()) {
+                    rescanned[tx.getFromId()] -= tx.getAmount();
+                    seen[tx.getFromId()] = true;
+                }
+                rescanned[tx.getToId()] += tx.getAmount();
+                seen[tx.getToId()] = true;
+            }
+        }
+        for (int id = 0; id < rescanned.length; id++) {
+            if (seen[id] != (history(id) != null)
+                    || seen[id] && INITIAL_BALANCE + rescanned[id] != getBalance(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Balance changes of a single account, one entry per block height that touched it.
+     */
+    private static final class AccountHistory {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private int[] heights = new int[INITIAL_CAPACITY];
+        private long[] balances = new long[INITIAL_CAPACITY];
+        private int size = 0;
+
+        long latest() {
+            return size == 0 ? INITIAL_BALANCE : balances[size - 1];
+        }
+
+        void record(final int atHeight, final long balance) {
+            if (size > 0 && heights[size - 1] == atHeight) {
+                balances[size - 1] = balance;
+                return;
+            }
+            if (size == heights.length) {
+                heights = Arrays.copyOf(heights, size * 2);
+                balances = Arrays.copyOf(balances, size * 2);
+            }
+            heights[size] = atHeight;
+            balances[size] = balance;
+            size++;
+        }
+
+        long at(final int atHeight) {
+            int idx = Arrays.binarySearch(heights, 0, size, atHeight);
+            if (idx >= 0) {
+                return balances[idx];
+            }
+            int insertion = -idx - 1;
+            return insertion == 0 ? INITIAL_BALANCE : balances[insertion - 1];
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package hszadkowski.blockchain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Ledger balances saved every {@link #getInterval()} blocks, so a restart only replays the
+ * blocks after the newest snapshot. Files are encoded and written on a single background
+ * thread; the chain only hands over a copy of the balances. Each snapshot is written to a
+ * temporary file and moved into place, and only the newest {@link #KEEP} are kept.
+ *
+ * <pre>
+ * snapshot := magic:i32 version:u8 height:i32 tipHash:32 count:i32 (account:str balance:i64)* crc32:i32
+ * </pre>
+ */
+public final class LedgerSnapshots implements Closeable {
+    // Set -Dblockchain.snapshotInterval=<n> to snapshot every n blocks
+    public static final String INTERVAL_PROPERTY = "blockchain.snapshotInterval";
+    static final int DEFAULT_INTERVAL = 1000;
+    static final int KEEP = 2;
+
+    private static final int MAGIC = 0x4c534e50;
+    private static final byte VERSION = 1;
+    private static final int FIXED_BYTES = Integer.BYTES + 1 + Integer.BYTES + Hash256.LENGTH + Integer.BYTES;
+    private static final int ENTRY_FIXED_BYTES = Short.BYTES + Long.BYTES;
+    private static final String PREFIX = "ledger-";
+    private static final String SUFFIX = ".snap";
+    private static final Pattern FILE_NAME =
+            Pattern.compile(Pattern.quote(PREFIX) + "(\\d{10})" + Pattern.quote(SUFFIX));
+
+    private final Path directory;
+    private final int interval;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(Workers.ioThreadFactory());
+
+    private LedgerSnapshots(final Path directory, final int interval) {
+        this.directory = directory;
+        this.interval = interval;
+    }
+
+    public static LedgerSnapshots open(final Path directory) throws IOException {
+        return open(directory, Integer.getInteger(INTERVAL_PROPERTY, DEFAULT_INTERVAL));
+    }
+
+    public static LedgerSnapshots open(final Path directory, final int interval) throws IOException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive: " + interval);
+        }
+        Files.createDirectories(directory);
+        return new LedgerSnapshots(directory, interval);
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public boolean isDue(final int height) {
+        return height % interval == 0;
+    }
+
+    /**
+     * Writes the balances after block {@code height}, whose hash is {@code tipHash}, in the background.
+     *
+     * @param balances a copy the caller no longer modifies
+     * @return completes with the snapshot file, or with the {@link IOException} that stopped it
+     */
+    public CompletableFuture<Path> writeAsync(final int height,
+                                              final Hash256 tipHash,
+                                              final Map<String, Long> balances) {
+        CompletableFuture<Path> written = new CompletableFuture<>();
+        writer.execute(() -> {
+            try {
+                written.complete(write(new Snapshot(height, tipHash, balances)));
+            } catch (IOException e) {
+                written.completeExceptionally(e);
+            }
+        });
+        return written;
+    }
+
+    private Path write(final Snapshot snapshot) throws IOException {
+        int size = FIXED_BYTES + Integer.BYTES;
+        for (String account : snapshot.balances.keySet()) {
+            size += ENTRY_FIXED_BYTES + BlockCodec.utf8Length(account);
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).put(VERSION).putInt(snapshot.height);
+        snapshot.tipHash.writeTo(out);
+        out.putInt(snapshot.balances.size());
+        for (Map.Entry<String, Long> entry : snapshot.balances.entrySet()) {
+            BlockCodec.putString(out, entry.getKey());
+            out.putLong(entry.getValue());
+        }
+        out.putInt(crc32(out.array(), out.position()));
+
+        Path file = file(snapshot.height);
+        Path tmp = directory.resolve(file.getFileName() + ".tmp");
+        Files.write(tmp, out.array());
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        List<Integer> heights = heights();
+        for (int i = KEEP; i < heights.size(); i++) {
+            Files.deleteIfExists(file(heights.get(i)));
+        }
+        return file;
+    }
+
+    /**
+     * The newest snapshot that decodes and whose tip hash matches the block at its height in
+     * {@code chain}; damaged snapshots and those from another chain are passed over.
+     *
+     * @return the snapshot, or null if there is none to start from
+     */
+    public Snapshot loadNewest(final List<Block> chain) throws IOException {
+        for (int height : heights()) {
+            if (height < 1 || height > chain.size()) {
+                continue;
+            }
+            Snapshot snapshot = read(height);
+            if (snapshot != null && chain.get(height - 1).getHash().equals(snapshot.tipHash)) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the snapshot at {@code height}, or null if its file is damaged
+     */
+    Snapshot read(final int height) throws IOException {
+        byte[] bytes = Files.readAllBytes(file(height));
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        try {
+            int body = bytes.length - Integer.BYTES;
+            if (body < FIXED_BYTES || in.getInt(body) != crc32(bytes, body)
+                    || in.getInt() != MAGIC || in.get() != VERSION || in.getInt() != height) {
+                return null;
+            }
+            Hash256 tipHash = Hash256.read(in);
+            int count = in.getInt();
+            if (count < 0 || count > (body - FIXED_BYTES) / ENTRY_FIXED_BYTES) {
+                return null;
+            }
+            Map<String, Long> balances = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                balances.put(BlockCodec.getString(in), in.getLong());
+            }
+            return new Snapshot(height, tipHash, balances);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the heights of the snapshots on disk, newest first
+     */
+    List<Integer> heights() throws IOException {
+        List<Integer> heights = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                Matcher name = FILE_NAME.matcher(file.getFileName().toString());
+                // Ten digits can still exceed an int, and then it is not one of ours either
+                long height = name.matches() ? Long.parseLong(name.group(1)) : -1;
+                if (height >= 0 && height <= Integer.MAX_VALUE) {
+                    heights.add((int) height);
+                }
+            }
+        }
+        heights.sort(Collections.reverseOrder());
+        return heights;
+    }
+
+    private Path file(final int height) {
+        return directory.resolve(String.format("%s%010d%s", PREFIX, height, SUFFIX));
+    }
+
+    private static int crc32(final byte[] data, final int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Waits for the snapshots already handed over to be written.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Balances after block {@link #getHeight()}, whose hash was {@link #getTipHash()}.
+     */
+    public static final class Snapshot {
+        private final int height;
+        private final Hash256 tipHash;
+        private final Map<String, Long> balances;
+
+        Snapshot(final int height, final Hash256 tipHash, final Map<String, Long> balances) {
+            this.height = height;
+            this.tipHash = tipHash;
+            this.balances = balances;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public Hash256 getTipHash() {
+            return tipHash;
+        }
+
+        public Map<String, Long> getBalances() {
+            return Collections.unmodifiableMap(balances);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package hszadkowski.blockchain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks {@link InclusionProof}s while holding only block headers. Headers are accepted
+ * in order and only if they pass the same {@link ChainState#checkHeader header check} as
+ * blocks on the full node: linkage, timestamp bounds and proof of work. Targets are
+ * replayed from the header timestamps with the same {@link Retargeter} rules the full
+ * node uses, so a proof verified here ties the transaction to a chain with the same
+ * proof of work the full node demanded.
+ */
+public final class LightVerifier {
+    private final List<BlockHeader> headers = new ArrayList<>();
+    private final Retargeter retargeter;
+    private Hash256 target = ChainState.GENESIS.getTarget();
+
+    /**
+     * Uses the interval given as a system property, like {@link Blockchain}.
+     */
+    public LightVerifier() {
+        this(Retargeter.fromSystemProperties().getIntervalMillis());
+    }
+
+    /**
+     * @param blockIntervalMillis the interval the chain was retargeted towards when it was mined
+     */
+    public LightVerifier(final long blockIntervalMillis) {
+        this.retargeter = new Retargeter(blockIntervalMillis, Retargeter.DEFAULT_WINDOW);
+    }
+
+    public synchronized boolean addHeader(final BlockHeader header) {
+        BlockHeader last = headers.isEmpty() ? null : headers.get(headers.size() - 1);
+        ChainState tip = last == null ? ChainState.GENESIS.withTarget(target)
+                : new ChainState(last.getId(), last.getHash(), last.getTimestamp(), target, false, 0);
+        if (tip.checkHeader(header, System.currentTimeMillis()) != null) {
+            return false;
+        }
+        headers.add(header);
+        long previousTimestamp = last == null ? 0 : last.getTimestamp();
+        target = retargeter.record(target,
+                retargeter.blockMillis(header.getId(), previousTimestamp, header.getTimestamp()));
+        return true;
+    }
+
+    public synchronized int getHeight() {
+        return headers.size();
+    }
+
+    /**
+     * The target the next header has to meet.
+     */
+    public synchronized Hash256 getTarget() {
+        return target;
+    }
+
+    public synchronized boolean verify(final InclusionProof proof) {
+        BlockHeader claimed = proof.getHeader();
+        int id = claimed.getId();
+        if (id < 1 || id > headers.size()) {
+            return false;
+        }
+        BlockHeader known = headers.get(id - 1);
+        return known.getHash().equals(claimed.getHash())
+                && known.hasMerkleRoot(claimed.getMerkleRoot())
+                && proof.isConsistent();
+    }
+}
@@ -0,0 +1,183 @@
+package hszadkowski.blockchain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pending transactions indexed by id and by sender. Iteration follows arrival order,
+ * which is also the block-template priority since transactions carry no fee.
+ * Insertion and confirmation are O(1) per transaction. Per-sender state is indexed by
+ * the sender's {@link AccountRegistry} id.
+ * Not thread-safe on its own: {@link Blockchain} guards it with its monitor.
+ */
+public final class Mempool {
+    private static final int INITIAL_SENDERS = 64;
+
+    private final int maxBlockTransactions;
+    private final Map<Long, Transaction> byId = new LinkedHashMap<>();
+    private final AccountRegistry registry = AccountRegistry.shared();
+    // Null where the sender has nothing pending
+    private final List<Set<Transaction>> bySender = new ArrayList<>();
+    private long[] pendingSpend = new long[INITIAL_SENDERS];
+    private final Map<Long, Long> arrivals = new HashMap<>();
+    private final LatencyHistogram residenceTimes = new LatencyHistogram();
+    // Written under the chain monitor only, but read by metrics gauges without it
+    private volatile int depth;
+    private volatile long bytes;
+
+    /**
+     * @param maxBlockTransactions upper bound of pending transactions put into one block template
+     */
+    public Mempool(final int maxBlockTransactions) {
+        if (maxBlockTransactions < 1) {
+            throw new IllegalArgumentException("A block must fit at least one transaction");
+        }
+        this.maxBlockTransactions = maxBlockTransactions;
+    }
+
+    /**
+     * @return false if a transaction with the same id is already pending
+     */
+    public boolean add(final Transaction tx) {
+        if (byId.putIfAbsent(tx.getTransactionId(), tx) != null) {
+            return false;
+        }
+        int sender = tx.getFromId();
+        while (bySender.size() <= sender) {
+            bySender.add(null);
+        }
+        if (bySender.get(sender) == null) {
+            bySender.set(sender, new LinkedHashSet<>());
+        }
+        bySender.get(sender).add(tx);
+        if (sender >= pendingSpend.length) {
+            pendingSpend = Arrays.copyOf(pendingSpend, Math.max(sender + 1, pendingSpend.length * 2));
+        }
+        pendingSpend[sender] += tx.getAmount();
+        arrivals.put(tx.getTransactionId(), System.nanoTime());
+        bytes += BlockCodec.encodedSize(tx);
+        depth = byId.size();
+        return true;
+    }
+
+    /**
+     * Evicts the pending transactions whose ids a confirmed block contained. The block may carry
+     * equal copies, e.g. decoded from elsewhere, so only the id decides: once it is in the chain,
+     * the pending transaction can never be confirmed again.
+     */
+    public void removeAll(final List<Transaction> confirmed) {
+        for (Transaction tx : confirmed) {
+            Transaction pending = byId.get(tx.getTransactionId());
+            if (pending != null) {
+                residenceTimes.record(System.nanoTime() - arrivals.get(tx.getTransactionId()));
+                remove(pending);
+            }
+        }
+        depth = byId.size();
+    }
+
+    /**
+     * Keeps {@code sender}'s pending transactions, oldest first, as long as together they fit
+     * {@code balance}, and evicts the rest. Called after a block changed the balance, so every
+     * block template stays affordable.
+     *
+     * @return the evicted transactions, in arrival order
+     */
+    List<Transaction> removeUnaffordable(final int sender, final long balance) {
+        if (sender >= bySender.size() || bySender.get(sender) == null || pendingSpend[sender] <= balance) {
+            return List.of();
+        }
+        List<Transaction> evicted = new ArrayList<>();
+        long kept = 0;
+        for (Transaction tx : bySender.get(sender)) {
+            if (kept + tx.getAmount() <= balance) {
+                kept += tx.getAmount();
+            } else {
+                evicted.add(tx);
+            }
+        }
+        for (Transaction tx : evicted) {
+            remove(tx);
+        }
+        depth = byId.size();
+        return evicted;
+    }
+
+    private void remove(final Transaction pending) {
+        byId.remove(pending.getTransactionId());
+        arrivals.remove(pending.getTransactionId());
+        bytes -= BlockCodec.encodedSize(pending);
+        int sender = pending.getFromId();
+        Set<Transaction> senderTxs = bySender.get(sender);
+        senderTxs.remove(pending);
+        if (senderTxs.isEmpty()) {
+            bySender.set(sender, null);
+            pendingSpend[sender] = 0;
+        } else {
+            pendingSpend[sender] -= pending.getAmount();
+        }
+    }
+
+    /**
+     * The highest-priority pending transactions, at most {@code maxBlockTransactions} of them.
+     */
+    public List<Transaction> selectForBlock() {
+        List<Transaction> selected = new ArrayList<>(Math.min(byId.size(), maxBlockTransactions));
+        Iterator<Transaction> it = byId.values().iterator();
+        while (it.hasNext() && selected.size() < maxBlockTransactions) {
+            selected.add(it.next());
+        }
+        return selected;
+    }
+
+    public boolean contains(final long transactionId) {
+        return byId.containsKey(transactionId);
+    }
+
+    public Set<Transaction> getBySender(final String sender) {
+        int id = registry.find(sender);
+        Set<Transaction> senderTxs = id >= 0 && id < bySender.size() ? bySender.get(id) : null;
+        return senderTxs == null ? Collections.emptySet() : Collections.unmodifiableSet(senderTxs);
+    }
+
+    /**
+     * Total amount {@code sender} has committed to transactions that are not confirmed yet.
+     */
+    public long getPendingSpend(final String sender) {
+        return getPendingSpend(registry.find(sender));
+    }
+
+    long getPendingSpend(final int senderId) {
+        return senderId >= 0 && senderId < pendingSpend.length ? pendingSpend[senderId] : 0;
+    }
+
+    public int size() {
+        return depth;
+    }
+
+    /**
+     * Encoded size of all pending transactions.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * How long confirmed transactions waited, from admission to their block, in nanoseconds.
+     */
+    public LatencyHistogram getResidenceTimes() {
+        return residenceTimes;
+    }
+
+    public int getMaxBlockTransactions() {
+        return maxBlockTransactions;
+    }
+}
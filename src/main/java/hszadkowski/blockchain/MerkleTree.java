@@ -0,0 +1,167 @@
+package hszadkowski.blockchain;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Merkle tree over a block's transactions. Leaves hash a fixed encoding of the transaction,
+ * kept here rather than shared with {@link BlockCodec}, so a new storage format never changes
+ * a Merkle root:
+ *
+ * <pre>
+ * leaf := id:i64 from:str to:str amount:i64 scheme:u8 signature:bytes publicKey:bytes
+ * </pre>
+ *
+ * Strings and byte arrays carry an unsigned 16-bit length, {@code 0xFFFF} for an absent value.
+ * Leaves and inner nodes use different one-byte prefixes so one can never be
+ * passed off as the other. A level with an odd node count pairs its last node with itself.
+ * Appending a transaction only rehashes the path from the new leaf to the root, and
+ * {@link #path(int)} gives the log-sized proof that a transaction is part of the tree.
+ * Not thread-safe.
+ */
+public final class MerkleTree {
+    static final byte LEAF_PREFIX = 0x00;
+    static final byte NODE_PREFIX = 0x01;
+    private static final int ABSENT = 0xFFFF;
+    private static final int LEAF_FIXED_BYTES = Long.BYTES + Long.BYTES + 1 + 4 * Short.BYTES;
+
+    private final List<List<byte[]>> levels = new ArrayList<>();
+    private final Sha256 sha = new Sha256();
+
+    public MerkleTree() {
+        levels.add(new ArrayList<>());
+    }
+
+    public static MerkleTree of(final List<Transaction> transactions) {
+        MerkleTree tree = new MerkleTree();
+        for (Transaction tx : transactions) {
+            tree.append(tx);
+        }
+        return tree;
+    }
+
+    public void append(final Transaction tx) {
+        levels.get(0).add(hashLeaf(sha, tx));
+
+        for (int level = 0; levels.get(level).size() > 1; level++) {
+            List<byte[]> nodes = levels.get(level);
+            int parent = (nodes.size() - 1) / 2;
+            byte[] left = nodes.get(parent * 2);
+            byte[] right = parent * 2 + 1 < nodes.size() ? nodes.get(parent * 2 + 1) : left;
+            if (levels.size() == level + 1) {
+                levels.add(new ArrayList<>());
+            }
+            List<byte[]> parents = levels.get(level + 1);
+            byte[] hash = hashNode(sha, left, right);
+            if (parent < parents.size()) {
+                parents.set(parent, hash);
+            } else {
+                parents.add(hash);
+            }
+        }
+    }
+
+    public int size() {
+        return levels.get(0).size();
+    }
+
+    /**
+     * The root hash; 32 zero bytes for an empty tree.
+     */
+    public byte[] getRoot() {
+        List<byte[]> top = levels.get(levels.size() - 1);
+        return top.isEmpty() ? new byte[Sha256.DIGEST_LENGTH] : top.get(0).clone();
+    }
+
+    /**
+     * Sibling hashes from the leaf at {@code index} up to, but excluding, the root.
+     * Where a node has no sibling it was paired with itself, so the path repeats it.
+     */
+    public byte[][] path(final int index) {
+        if (index < 0 || index >= size()) {
+            throw new IllegalArgumentException("No leaf " + index + " in tree of " + size());
+        }
+        byte[][] path = new byte[levels.size() - 1][];
+        int position = index;
+        for (int level = 0; level < path.length; level++) {
+            List<byte[]> nodes = levels.get(level);
+            int sibling = position ^ 1;
+            path[level] = (sibling < nodes.size() ? nodes.get(sibling) : nodes.get(position)).clone();
+            position >>>= 1;
+        }
+        return path;
+    }
+
+    /**
+     * Recomputes the root from a transaction, its leaf index and the path returned by {@link #path(int)}.
+     * The header does not carry the leaf count, so an index past the last leaf is recognised by
+     * the padding it would have to climb through: a right-hand node equal to its left sibling,
+     * which a tree of distinct transactions never has. Otherwise the last transaction of a block
+     * could be proven at a second, made-up position (CVE-2012-2459).
+     *
+     * @return the root, or null if {@code index} does not fit the path or lies past the last leaf
+     */
+    public static byte[] rootFromPath(final Transaction tx, final int index, final byte[][] path) {
+        if (index < 0 || path.length < Integer.SIZE - 1 && index >= 1 << path.length) {
+            return null;
+        }
+        Sha256 sha = new Sha256();
+        byte[] node = hashLeaf(sha, tx);
+        int position = index;
+        for (byte[] sibling : path) {
+            if ((position & 1) == 0) {
+                node = hashNode(sha, node, sibling);
+            } else if (Arrays.equals(sibling, node)) {
+                return null;
+            } else {
+                node = hashNode(sha, sibling, node);
+            }
+            position >>>= 1;
+        }
+        return node;
+    }
+
+    private static byte[] hashLeaf(final Sha256 sha, final Transaction tx) {
+        sha.update(new byte[] {LEAF_PREFIX});
+        sha.update(leafEncoding(tx));
+        return sha.digest();
+    }
+
+    static byte[] leafEncoding(final Transaction tx) {
+        byte[] from = tx.getFrom().getBytes(StandardCharsets.UTF_8);
+        byte[] to = tx.getTo().getBytes(StandardCharsets.UTF_8);
+        byte[] key = tx.getPublicKey() == null ? null : tx.getPublicKey().getEncoded();
+        ByteBuffer out = ByteBuffer.allocate(LEAF_FIXED_BYTES + from.length + to.length
+                + (tx.getSignature() == null ? 0 : tx.getSignature().length) + (key == null ? 0 : key.length));
+        out.putLong(tx.getTransactionId());
+        putBytes(out, from);
+        putBytes(out, to);
+        out.putLong(tx.getAmount());
+        out.put(tx.getScheme().getId());
+        putBytes(out, tx.getSignature());
+        putBytes(out, key);
+        return out.array();
+    }
+
+    private static void putBytes(final ByteBuffer out, final byte[] data) {
+        if (data == null) {
+            out.putShort((short) ABSENT);
+            return;
+        }
+        if (data.length >= ABSENT) {
+            throw new IllegalArgumentException("Field of " + data.length + " bytes is too long for a leaf");
+        }
+        out.putShort((short) data.length);
+        out.put(data);
+    }
+
+    static byte[] hashNode(final Sha256 sha, final byte[] left, final byte[] right) {
+        sha.update(new byte[] {NODE_PREFIX});
+        sha.update(left);
+        sha.update(right);
+        return sha.digest();
+    }
+}
@@ -0,0 +1,25 @@
+package hszadkowski.blockchain;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Destination for the values {@link ChainMetrics} exposes. Values are pulled when the
+ * registry is read, so nothing is pushed from the chain's hot paths.
+ */
+public interface MetricsRegistry {
+    double MEDIAN = 50;
+    double TAIL_PERCENTILE = 99;
+
+    void gauge(String name, DoubleSupplier value);
+
+    /**
+     * Publishes a histogram as count, mean, median, 99th percentile and maximum gauges.
+     */
+    default void histogram(final String name, final LatencyHistogram histogram) {
+        gauge(name + ".count", histogram::getCount);
+        gauge(name + ".mean", histogram::getMean);
+        gauge(name + ".p50", () -> histogram.getPercentile(MEDIAN));
+        gauge(name + ".p99", () -> histogram.getPercentile(TAIL_PERCENTILE));
+        gauge(name + ".max", histogram::getMax);
+    }
+}
@@ -5,51 +5,111 @@ import java.util.List;
 public final class Miner implements Runnable {
     private final Blockchain blockchain;
     private final Client minerClient;
+    private final WorkCoordinator coordinator;
+    private final MiningStats stats = new MiningStats();
 
     public Miner(final Blockchain blockchain, final Client minerClient) {
+        this(blockchain, minerClient, WorkCoordinator.independent());
+    }
+
+    /**
+     * Miners sharing a {@link WorkCoordinator} split the nonce space of a template between them.
+     */
+    public Miner(final Blockchain blockchain, final Client minerClient, final WorkCoordinator coordinator) {
         this.blockchain = blockchain;
         this.minerClient = minerClient;
+        this.coordinator = coordinator;
+    }
+
+    public MiningStats getStats() {
+        return stats;
     }
 
     @Override
     public void run() {
         try {
             while (!blockchain.hasReachedTarget()) {
+                MiningTemplateEvent event = new MiningTemplateEvent();
+                event.begin();
+                long templateVersion = blockchain.getTipVersion();
                 int id = blockchain.getNextBlockId();
-                String previousHash = blockchain.getLastHash();
+                Hash256 previousHash = blockchain.getLastHash();
 
                 List<Transaction> transactionsForBlock =
                         blockchain.collectTransactionsForNewBlock(minerClient.getName());
 
+                HashingEngine engine = HashingEngine.forCurrentThread();
+                WorkCoordinator.NonceRange range = coordinator.claim(id, previousHash);
+                long extraNonce = range.getExtraNonce();
+                // Hashing cost per nonce no longer depends on how many transactions the block carries
+                byte[] merkleRoot = MerkleTree.of(transactionsForBlock).getRoot();
+                // Fixed per template: the header commits to it, and retargeting is timed by it
                 long startTime = System.currentTimeMillis();
-                int magicNumber;
-                String hash;
+                engine.prepare(BlockHeader.prefix(id, previousHash, merkleRoot, startTime, extraNonce));
+                long nonce = range.getStart();
+
+                int magicNumber = 0;
+                boolean solved = false;
+                long attempts = 0;
                 do {
 
                     if (Thread.interrupted()) {
+                        stats.recordTemplate(attempts, false);
+                        commit(event, id, transactionsForBlock, attempts, MiningTemplateEvent.INTERRUPTED);
                         return;
                     }
 
-                    if (blockchain.getDifficulty() < 0) {
-                        throw new MiningException("Invalid difficulty level: " + blockchain.getDifficulty());
+                    if (blockchain.getTipVersion() != templateVersion) {
+                        break;
                     }
 
-                    magicNumber = (int) (Math.random() * Integer.MAX_VALUE);
-                    String data = id + previousHash + magicNumber + transactionsForBlock;
-                    hash = StringUtil.applySha256(data);
-                } while (!hash.startsWith("0".repeat(blockchain.getDifficulty()))
-                        && !blockchain.hasReachedTarget());
+                    Hash256 target = blockchain.getTarget();
+                    if (target == null) {
+                        throw new MiningException("No proof-of-work target");
+                    }
 
-                long generationTime = (System.currentTimeMillis() - startTime) / 1000L;
+                    if (nonce == range.getEnd()) {
+                        range = coordinator.claim(id, previousHash);
+                        nonce = range.getStart();
+                        if (range.getExtraNonce() != extraNonce) {
+                            extraNonce = range.getExtraNonce();
+                            engine.prepare(BlockHeader.prefix(id, previousHash, merkleRoot, startTime, extraNonce));
+                        }
+                    }
+
+                    // One pass covers as many nonces as the engine has lanes, never crossing the range end
+                    int batch = (int) Math.min(engine.getLanes(), range.getEnd() - nonce);
+                    int hit = engine.tryNonces((int) nonce, batch, target);
+                    solved = hit >= 0;
+                    if (solved) {
+                        magicNumber = (int) nonce + hit;
+                    }
+                    nonce += batch;
+                    attempts += batch;
+                } while (!solved && !blockchain.hasReachedTarget());
 
                 // Possibly another miner has already reached the target, so checking again
                 if (blockchain.hasReachedTarget()) {
+                    stats.recordTemplate(attempts, true);
+                    commit(event, id, transactionsForBlock, attempts, MiningTemplateEvent.ABANDONED);
                     return;
                 }
 
-                Block block = new Block(id, System.currentTimeMillis(), previousHash, hash,
-                        magicNumber, generationTime, transactionsForBlock,
-                        minerClient.getName());
+                // Another block was accepted meanwhile, so rebuild the template on the new tip
+                if (blockchain.getTipVersion() != templateVersion) {
+                    stats.recordTemplate(attempts, true);
+                    commit(event, id, transactionsForBlock, attempts, MiningTemplateEvent.ABANDONED);
+                    continue;
+                }
+                stats.recordTemplate(attempts, false);
+                commit(event, id, transactionsForBlock, attempts, MiningTemplateEvent.SOLVED);
+
+                Hash256 hash = engine.lastHash();
+                long generationTime = System.currentTimeMillis() - startTime;
+
+                BlockHeader header = new BlockHeader(id, previousHash, merkleRoot, startTime,
+                        extraNonce, magicNumber, hash);
+                Block block = new Block(header, generationTime, transactionsForBlock, minerClient.getName());
 
                 blockchain.addBlock(block);
             }
@@ -59,4 +119,18 @@ public final class Miner implements Runnable {
             Thread.currentThread().interrupt();
         }
     }
+
+    private static void commit(final MiningTemplateEvent event,
+                               final int id,
+                               final List<Transaction> transactions,
+                               final long hashes,
+                               final String outcome) {
+        if (event.shouldCommit()) {
+            event.blockId = id;
+            event.transactionCount = transactions.size();
+            event.hashes = hashes;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
 }
@@ -0,0 +1,66 @@
+package hszadkowski.blockchain;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Work counters of a miner. Hashes are added once per template, not per attempt,
+ * and a template counts as stale when the chain tip moved before it could be submitted.
+ */
+public final class MiningStats {
+    private static final double PERCENT = 100.0;
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder staleHashes = new LongAdder();
+    private final LongAdder templates = new LongAdder();
+    private final LongAdder staleTemplates = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    public void recordTemplate(final long hashCount, final boolean stale) {
+        hashes.add(hashCount);
+        templates.increment();
+        if (stale) {
+            staleHashes.add(hashCount);
+            staleTemplates.increment();
+        }
+    }
+
+    public long getHashes() {
+        return hashes.sum();
+    }
+
+    public long getStaleHashes() {
+        return staleHashes.sum();
+    }
+
+    public long getTemplates() {
+        return templates.sum();
+    }
+
+    public long getStaleTemplates() {
+        return staleTemplates.sum();
+    }
+
+    /**
+     * Share of all hashes that were spent on templates whose tip was already outdated.
+     */
+    public double getStaleWorkPercentage() {
+        long total = getHashes();
+        return total == 0 ? 0.0 : PERCENT * getStaleHashes() / total;
+    }
+
+    /**
+     * Average hashes per second since these stats were created.
+     */
+    public double getHashRate() {
+        return getHashes() / (Math.max(1, System.nanoTime() - startNanos) / NANOS_PER_SECOND);
+    }
+
+    public void addTo(final MiningStats total) {
+        total.hashes.add(getHashes());
+        total.staleHashes.add(getStaleHashes());
+        total.templates.add(getTemplates());
+        total.staleTemplates.add(getStaleTemplates());
+    }
+}
@@ -0,0 +1,32 @@
+package hszadkowski.blockchain;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One block template worked on by a miner, from building it to solving or abandoning it.
+ */
+@Name("hszadkowski.blockchain.MiningTemplate")
+@Label("Mining Template")
+@Category("Blockchain")
+@Description("A miner working on one block template")
+final class MiningTemplateEvent extends Event {
+    static final String SOLVED = "solved";
+    static final String ABANDONED = "abandoned";
+    static final String INTERRUPTED = "interrupted";
+
+    @Label("Block Id")
+    int blockId;
+
+    @Label("Transactions")
+    int transactionCount;
+
+    @Label("Hashes")
+    long hashes;
+
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,100 @@
+package hszadkowski.blockchain;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Retargets once every {@link #getWindow()} blocks: the latest target is scaled by how long the
+ * window actually took relative to the configured block interval, and kept in between. Every
+ * block of a window is mined against the same target, so the window's total time measures that
+ * target alone; a retarget moves it at most fourfold, and one lucky or unlucky block cannot
+ * swing the rate. A full 256-bit target moves in fine steps instead of 16x jumps.
+ * Guarded by the chain lock, like {@link Mempool}.
+ */
+final class Retargeter {
+    static final String INTERVAL_PROPERTY = "blockchain.blockIntervalMillis";
+    static final long DEFAULT_INTERVAL_MILLIS = 1_000L;
+    static final int DEFAULT_WINDOW = 10;
+
+    // One retarget moves the target by at most this factor either way
+    private static final long MAX_STEP = 4;
+    private static final BigInteger MAX_TARGET = new BigInteger(1, Hash256.MAX.toBytes());
+    private static final double LOG_2 = Math.log(2);
+    private static final int DOUBLE_PRECISION = 53;
+
+    private final long intervalMillis;
+    private final int window;
+    // Blocks and milliseconds since the last retarget
+    private int count;
+    private long timeSum;
+
+    Retargeter(final long intervalMillis, final int window) {
+        if (intervalMillis < 1 || window < 1) {
+            throw new IllegalArgumentException("Interval and window must be positive");
+        }
+        this.intervalMillis = intervalMillis;
+        this.window = window;
+    }
+
+    /**
+     * The interval from {@code -Dblockchain.blockIntervalMillis}, if set, over the default window.
+     */
+    static Retargeter fromSystemProperties() {
+        return new Retargeter(Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL_MILLIS), DEFAULT_WINDOW);
+    }
+
+    long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    int getWindow() {
+        return window;
+    }
+
+    /**
+     * Adds a block mined against {@code target} in {@code blockMillis} to the window.
+     *
+     * @return the target for the next block: {@code target} itself until the window is full
+     */
+    Hash256 record(final Hash256 target, final long blockMillis) {
+        timeSum += Math.max(0, blockMillis);
+        if (++count < window) {
+            return target;
+        }
+        long expected = window * intervalMillis;
+        long actual = Math.min(expected * MAX_STEP, Math.max(expected / MAX_STEP, timeSum));
+        count = 0;
+        timeSum = 0;
+        BigInteger scaled = new BigInteger(1, target.toBytes())
+                .multiply(BigInteger.valueOf(Math.max(1, actual)))
+                .divide(BigInteger.valueOf(expected));
+        return toHash(scaled.max(BigInteger.ONE).min(MAX_TARGET));
+    }
+
+    /**
+     * How long block {@code id} took after its parent, judged by their header timestamps,
+     * which the proof of work commits to, rather than by the generation time a miner reports.
+     * The first block has no parent to be timed against and counts as on schedule.
+     */
+    long blockMillis(final int id, final long previousTimestamp, final long timestamp) {
+        return id == 1 ? intervalMillis : timestamp - previousTimestamp;
+    }
+
+    private static Hash256 toHash(final BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        ByteBuffer out = ByteBuffer.allocate(Hash256.LENGTH);
+        int length = Math.min(bytes.length, Hash256.LENGTH);
+        out.position(Hash256.LENGTH - length).put(bytes, bytes.length - length, length);
+        return Hash256.of(out.array());
+    }
+
+    /**
+     * Difficulty in bits of work: log2 of the expected number of hashes per block under {@code target}.
+     */
+    static double difficultyBits(final Hash256 target) {
+        BigInteger space = new BigInteger(1, target.toBytes()).add(BigInteger.ONE);
+        int shift = Math.max(0, space.bitLength() - DOUBLE_PRECISION);
+        double log2 = shift + Math.log(space.shiftRight(shift).doubleValue()) / LOG_2;
+        return Hash256.LENGTH * Byte.SIZE - log2;
+    }
+}
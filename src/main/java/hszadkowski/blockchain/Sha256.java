@@ -0,0 +1,237 @@
+package hszadkowski.blockchain;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Allocation-free SHA-256 whose intermediate state can be copied, so a fixed
+ * prefix is compressed once (the midstate) and only the varying tail is hashed
+ * per attempt. Instances are not thread-safe.
+ */
+public final class Sha256 {
+    public static final int DIGEST_LENGTH = 32;
+    static final int BLOCK_LENGTH = 64;
+    static final byte PADDING_START = (byte) 0x80;
+    static final int STATE_WORDS = 8;
+    // Words of one message block, which seed the first entries of the schedule
+    static final int BLOCK_WORDS = BLOCK_LENGTH / Integer.BYTES;
+    private static final int LENGTH_OFFSET = BLOCK_LENGTH - Long.BYTES;
+    private static final VarHandle BIG_ENDIAN_INT =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle BIG_ENDIAN_LONG =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    // Rotation and shift amounts of the four SHA-256 functions, FIPS 180-4 section 4.1.2
+    static final int SUM0_ROTATE_1 = 2;
+    static final int SUM0_ROTATE_2 = 13;
+    static final int SUM0_ROTATE_3 = 22;
+    static final int SUM1_ROTATE_1 = 6;
+    static final int SUM1_ROTATE_2 = 11;
+    static final int SUM1_ROTATE_3 = 25;
+    static final int SIGMA0_ROTATE_1 = 7;
+    static final int SIGMA0_ROTATE_2 = 18;
+    static final int SIGMA0_SHIFT = 3;
+    static final int SIGMA1_ROTATE_1 = 17;
+    static final int SIGMA1_ROTATE_2 = 19;
+    static final int SIGMA1_SHIFT = 10;
+    // How far back the message schedule reaches: W[t] = sigma1(W[t-2]) + W[t-7] + sigma0(W[t-15]) + W[t-16]
+    static final int SIGMA1_WORD = 2;
+    static final int SCHEDULE_WORD = 7;
+    static final int SIGMA0_WORD = 15;
+
+    private static final int[] INITIAL_STATE = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a,
+        0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    static final int[] K = {
+        0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+        0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+        0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+        0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+        0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+        0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+        0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+        0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    private final int[] state = new int[STATE_WORDS];
+    private final byte[] buffer = new byte[BLOCK_LENGTH];
+    private final int[] schedule = new int[BLOCK_LENGTH];
+    private int bufferLength;
+    private long totalLength;
+
+    public Sha256() {
+        reset();
+    }
+
+    public void reset() {
+        System.arraycopy(INITIAL_STATE, 0, state, 0, state.length);
+        bufferLength = 0;
+        totalLength = 0;
+    }
+
+    /**
+     * Makes this instance continue from exactly where {@code other} currently is.
+     */
+    public void copyFrom(final Sha256 other) {
+        System.arraycopy(other.state, 0, state, 0, state.length);
+        System.arraycopy(other.buffer, 0, buffer, 0, other.bufferLength);
+        bufferLength = other.bufferLength;
+        totalLength = other.totalLength;
+    }
+
+    /**
+     * Copies the chaining value, i.e. the state after the last complete block.
+     */
+    void exportState(final int[] out) {
+        System.arraycopy(state, 0, out, 0, state.length);
+    }
+
+    /**
+     * Copies the bytes of the incomplete block into {@code out} and returns their count.
+     */
+    int exportBuffer(final byte[] out) {
+        System.arraycopy(buffer, 0, out, 0, bufferLength);
+        return bufferLength;
+    }
+
+    long getTotalLength() {
+        return totalLength;
+    }
+
+    public void update(final byte[] data) {
+        update(data, 0, data.length);
+    }
+
+    public void update(final byte[] data, final int offset, final int length) {
+        int pos = offset;
+        int remaining = length;
+        totalLength += length;
+        if (bufferLength > 0) {
+            int n = Math.min(remaining, BLOCK_LENGTH - bufferLength);
+            System.arraycopy(data, pos, buffer, bufferLength, n);
+            bufferLength += n;
+            pos += n;
+            remaining -= n;
+            if (bufferLength < BLOCK_LENGTH) {
+                return;
+            }
+            compress(buffer, 0);
+            bufferLength = 0;
+        }
+        while (remaining >= BLOCK_LENGTH) {
+            compress(data, pos);
+            pos += BLOCK_LENGTH;
+            remaining -= BLOCK_LENGTH;
+        }
+        System.arraycopy(data, pos, buffer, 0, remaining);
+        bufferLength = remaining;
+    }
+
+    public void updateInt(final int value) {
+        if (bufferLength <= BLOCK_LENGTH - Integer.BYTES) {
+            BIG_ENDIAN_INT.set(buffer, bufferLength, value);
+            bufferLength += Integer.BYTES;
+            totalLength += Integer.BYTES;
+            if (bufferLength == BLOCK_LENGTH) {
+                compress(buffer, 0);
+                bufferLength = 0;
+            }
+            return;
+        }
+        for (int shift = Integer.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            buffer[bufferLength++] = (byte) (value >>> shift);
+            totalLength++;
+            if (bufferLength == BLOCK_LENGTH) {
+                compress(buffer, 0);
+                bufferLength = 0;
+            }
+        }
+    }
+
+    /**
+     * Finishes the hash into {@code out[0..32)} and resets this instance.
+     */
+    public void digest(final byte[] out) {
+        long bitLength = totalLength * Byte.SIZE;
+        buffer[bufferLength++] = PADDING_START;
+        if (bufferLength > LENGTH_OFFSET) {
+            while (bufferLength < BLOCK_LENGTH) {
+                buffer[bufferLength++] = 0;
+            }
+            compress(buffer, 0);
+            bufferLength = 0;
+        }
+        while (bufferLength < LENGTH_OFFSET) {
+            buffer[bufferLength++] = 0;
+        }
+        BIG_ENDIAN_LONG.set(buffer, LENGTH_OFFSET, bitLength);
+        compress(buffer, 0);
+        for (int i = 0; i < state.length; i++) {
+            BIG_ENDIAN_INT.set(out, i * Integer.BYTES, state[i]);
+        }
+        reset();
+    }
+
+    public byte[] digest() {
+        byte[] out = new byte[DIGEST_LENGTH];
+        digest(out);
+        return out;
+    }
+
+    private void compress(final byte[] block, final int offset) {
+        int[] w = schedule;
+        for (int i = 0; i < BLOCK_WORDS; i++) {
+            w[i] = (int) BIG_ENDIAN_INT.get(block, offset + i * Integer.BYTES);
+        }
+        for (int i = BLOCK_WORDS; i < BLOCK_LENGTH; i++) {
+            int w15 = w[i - SIGMA0_WORD];
+            int w2 = w[i - SIGMA1_WORD];
+            int s0 = Integer.rotateRight(w15, SIGMA0_ROTATE_1) ^ Integer.rotateRight(w15, SIGMA0_ROTATE_2)
+                    ^ (w15 >>> SIGMA0_SHIFT);
+            int s1 = Integer.rotateRight(w2, SIGMA1_ROTATE_1) ^ Integer.rotateRight(w2, SIGMA1_ROTATE_2)
+                    ^ (w2 >>> SIGMA1_SHIFT);
+            w[i] = w[i - BLOCK_WORDS] + s0 + w[i - SCHEDULE_WORD] + s1;
+        }
+
+        // The state holds the working variables a..h in order
+        int word = 0;
+        int a = state[word++];
+        int b = state[word++];
+        int c = state[word++];
+        int d = state[word++];
+        int e = state[word++];
+        int f = state[word++];
+        int g = state[word++];
+        int h = state[word];
+        for (int i = 0; i < BLOCK_LENGTH; i++) {
+            int s1 = Integer.rotateRight(e, SUM1_ROTATE_1) ^ Integer.rotateRight(e, SUM1_ROTATE_2)
+                    ^ Integer.rotateRight(e, SUM1_ROTATE_3);
+            int ch = (e & f) ^ (~e & g);
+            int t1 = h + s1 + ch + K[i] + w[i];
+            int s0 = Integer.rotateRight(a, SUM0_ROTATE_1) ^ Integer.rotateRight(a, SUM0_ROTATE_2)
+                    ^ Integer.rotateRight(a, SUM0_ROTATE_3);
+            int maj = (a & b) ^ (a & c) ^ (b & c);
+            int t2 = s0 + maj;
+            h = g;
+            g = f;
+            f = e;
+            e = d + t1;
+            d = c;
+            c = b;
+            b = a;
+            a = t1 + t2;
+        }
+        word = 0;
+        state[word++] += a;
+        state[word++] += b;
+        state[word++] += c;
+        state[word++] += d;
+        state[word++] += e;
+        state[word++] += f;
+        state[word++] += g;
+        state[word] += h;
+    }
+}
@@ -0,0 +1,79 @@
+package hszadkowski.blockchain;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * The signature algorithms a transaction can be signed with. The id is what the
+ * {@link BlockCodec} stores, so ids must never be reused or renumbered.
+ * Ed25519 and ECDSA keys are generated in well under a millisecond and give signatures
+ * of 64 and about 72 bytes, where 1024-bit RSA takes tens of milliseconds and 128 bytes.
+ */
+public enum SignatureScheme {
+    RSA(1, "RSA", "SHA256withRSA"),
+    ED25519(2, "Ed25519", "Ed25519"),
+    ECDSA_P256(3, "EC", "SHA256withECDSA");
+
+    private static final int RSA_KEY_BITS = 1024;
+
+    private final byte id;
+    private final String keyAlgorithm;
+    private final String signatureAlgorithm;
+
+    SignatureScheme(final int id, final String keyAlgorithm, final String signatureAlgorithm) {
+        this.id = (byte) id;
+        this.keyAlgorithm = keyAlgorithm;
+        this.signatureAlgorithm = signatureAlgorithm;
+    }
+
+    public static SignatureScheme fromId(final byte id) {
+        for (SignatureScheme scheme : values()) {
+            if (scheme.id == id) {
+                return scheme;
+            }
+        }
+        throw new IllegalArgumentException("Unknown signature scheme " + id);
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    public String getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    public String getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    public KeyPair generateKeyPair() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(keyAlgorithm);
+        if (this == RSA) {
+            generator.initialize(RSA_KEY_BITS);
+        } else if (this == ECDSA_P256) {
+            try {
+                generator.initialize(new ECGenParameterSpec("secp256r1"));
+            } catch (InvalidAlgorithmParameterException e) {
+                throw new NoSuchAlgorithmException("Curve secp256r1 is not supported", e);
+            }
+        }
+        return generator.generateKeyPair();
+    }
+
+    public Signature newSignature() throws NoSuchAlgorithmException {
+        return Signature.getInstance(signatureAlgorithm);
+    }
+
+    public PublicKey decodePublicKey(final byte[] encoded) throws GeneralSecurityException {
+        return KeyFactory.getInstance(keyAlgorithm).generatePublic(new X509EncodedKeySpec(encoded));
+    }
+}
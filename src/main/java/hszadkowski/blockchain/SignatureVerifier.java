@@ -0,0 +1,129 @@
+package hszadkowski.blockchain;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Verifies transaction signatures in parallel on a {@link ForkJoinPool}, reusing one
+ * {@link Signature} per thread and scheme. Successful verifications are remembered by transaction
+ * id, so a transaction checked at mempool admission is not checked again when its block
+ * arrives. A cache hit requires the very same (immutable) transaction instance.
+ */
+public final class SignatureVerifier {
+    static final int DEFAULT_CACHE_LIMIT = 100_000;
+    private static final int PARALLEL_THRESHOLD = 4;
+
+    // Per thread, one lazily created Signature per scheme, indexed by ordinal
+    private static final ThreadLocal<Signature[]> SIGNATURES =
+            ThreadLocal.withInitial(() -> new Signature[SignatureScheme.values().length]);
+
+    private final ForkJoinPool pool;
+    private final int cacheLimit;
+    private final Map<Long, Transaction> verified = new ConcurrentHashMap<>();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+
+    public SignatureVerifier() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CACHE_LIMIT);
+    }
+
+    public SignatureVerifier(final ForkJoinPool pool, final int cacheLimit) {
+        this.pool = pool;
+        this.cacheLimit = cacheLimit;
+    }
+
+    /**
+     * @return true if the signature is correct; award transactions need none
+     */
+    public boolean verify(final Transaction tx) {
+        if (tx.isAwardTransaction()) {
+            return true;
+        }
+        if (verified.get(tx.getTransactionId()) == tx) {
+            cacheHits.increment();
+            return true;
+        }
+        verifications.increment();
+        if (!tx.verifySignature(signatureFor(tx.getScheme()))) {
+            // A key of the wrong type can leave a provider-delegating Signature unusable, so start afresh
+            SIGNATURES.get()[tx.getScheme().ordinal()] = null;
+            return false;
+        }
+        if (verified.size() >= cacheLimit) {
+            verified.clear();
+        }
+        verified.put(tx.getTransactionId(), tx);
+        return true;
+    }
+
+    private static Signature signatureFor(final SignatureScheme scheme) {
+        Signature[] signatures = SIGNATURES.get();
+        Signature signature = signatures[scheme.ordinal()];
+        if (signature == null) {
+            try {
+                signature = scheme.newSignature();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            signatures[scheme.ordinal()] = signature;
+        }
+        return signature;
+    }
+
+    /**
+     * Checks all signatures, fanning out over the pool for larger batches.
+     *
+     * @return some transaction with an invalid signature, or null if all are valid
+     */
+    public Transaction findInvalid(final List<Transaction> txs) {
+        if (txs.size() < PARALLEL_THRESHOLD) {
+            for (Transaction tx : txs) {
+                if (!verify(tx)) {
+                    return tx;
+                }
+            }
+            return null;
+        }
+        return pool.submit(() -> txs.parallelStream()
+                .filter(tx -> !verify(tx))
+                .findAny()
+                .orElse(null)).join();
+    }
+
+    /**
+     * Checks every signature of a batch on the pool without blocking the caller.
+     *
+     * @return a future of per-transaction validity, in the order of {@code txs}
+     */
+    public CompletableFuture<boolean[]> verifyAllAsync(final List<Transaction> txs) {
+        return CompletableFuture.supplyAsync(() -> {
+            boolean[] valid = new boolean[txs.size()];
+            IntStream.range(0, txs.size()).parallel().forEach(i -> valid[i] = verify(txs.get(i)));
+            return valid;
+        }, pool);
+    }
+
+    /**
+     * Drops confirmed or evicted transactions from the cache by id; they will not be verified again.
+     */
+    public void forget(final List<Transaction> txs) {
+        for (Transaction tx : txs) {
+            verified.remove(tx.getTransactionId());
+        }
+    }
+
+    public long getVerifications() {
+        return verifications.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+}
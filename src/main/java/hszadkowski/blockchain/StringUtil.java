@@ -4,21 +4,26 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 
 public class StringUtil {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int BITS_PER_NIBBLE = 4;
+    private static final int NIBBLE_MASK = 0xf;
+
     public static String applySha256(String input) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte elem : hash) {
-                String hex = Integer.toHexString(0xff & elem);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            return hexString.toString();
+            return toHex(hash);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
+
+    public static String toHex(final byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> BITS_PER_NIBBLE) & NIBBLE_MASK];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & NIBBLE_MASK];
+        }
+        return new String(hex);
+    }
 }
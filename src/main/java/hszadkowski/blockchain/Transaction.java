@@ -8,12 +8,17 @@ import java.util.Base64;
 import jakarta.annotation.Generated;
 
 public final class Transaction {
-    private final String from;
-    private final String to;
+    // An address is held as its registry id once it has one, and as a string only until then.
+    // The string is cleared after the id is written, so whoever reads it as null sees the id.
+    private volatile String from;
+    private volatile String to;
+    private int fromId;
+    private int toId;
     private final long amount;
     private final long transactionId;
     private final byte[] signature;
     private final PublicKey publicKey;
+    private final SignatureScheme scheme;
 
     public Transaction(final String from,
                        final String to,
@@ -21,12 +26,26 @@ public final class Transaction {
                        final long transactionId,
                        final byte[] signature,
                        final PublicKey publicKey) {
-        this.from = from;
-        this.to = to;
+        this(from, to, amount, transactionId, signature, publicKey, SignatureScheme.RSA);
+    }
+
+    public Transaction(final String from,
+                       final String to,
+                       final long amount,
+                       final long transactionId,
+                       final byte[] signature,
+                       final PublicKey publicKey,
+                       final SignatureScheme scheme) {
+        AccountRegistry registry = AccountRegistry.shared();
+        this.fromId = registry.find(from);
+        this.toId = registry.find(to);
+        this.from = fromId == AccountRegistry.UNKNOWN ? from : null;
+        this.to = toId == AccountRegistry.UNKNOWN ? to : null;
         this.amount = amount;
         this.transactionId = transactionId;
         this.signature = signature;
         this.publicKey = publicKey;
+        this.scheme = scheme;
     }
 
     /**
@@ -39,12 +58,50 @@ public final class Transaction {
 
     @Generated(value = "ExcludeFromCoverage")
     public String getFrom() {
-        return from;
+        String name = from;
+        return name != null ? name : AccountRegistry.shared().nameOf(fromId);
     }
 
     @Generated(value = "ExcludeFromCoverage")
     public String getTo() {
-        return to;
+        String name = to;
+        return name != null ? name : AccountRegistry.shared().nameOf(toId);
+    }
+
+    /**
+     * The sender's registry id, registering the sender if it is new. Only called once the
+     * transaction is admitted or its block is applied, so rejected submissions leave no trace
+     * in the {@link AccountRegistry}.
+     */
+    int getFromId() {
+        String name = from;
+        if (name == null) {
+            return fromId;
+        }
+        int id = AccountRegistry.shared().idOf(name);
+        fromId = id;
+        from = null;
+        return id;
+    }
+
+    /**
+     * Like {@link #getFromId()}, but without registering: {@link AccountRegistry#UNKNOWN} for a
+     * sender that has never been admitted.
+     */
+    int findFromId() {
+        String name = from;
+        return name == null ? fromId : AccountRegistry.shared().find(name);
+    }
+
+    int getToId() {
+        String name = to;
+        if (name == null) {
+            return toId;
+        }
+        int id = AccountRegistry.shared().idOf(name);
+        toId = id;
+        to = null;
+        return id;
     }
 
     @Generated(value = "ExcludeFromCoverage")
@@ -52,13 +109,27 @@ public final class Transaction {
         return amount;
     }
 
+    @Generated(value = "ExcludeFromCoverage")
+    public long getTransactionId() {
+        return transactionId;
+    }
+
+    byte[] getSignature() {
+        return signature;
+    }
+
     @Generated(value = "ExcludeFromCoverage")
     public PublicKey getPublicKey() {
         return this.publicKey;
     }
 
+    public SignatureScheme getScheme() {
+        return scheme;
+    }
+
     public boolean isAwardTransaction() {
-        return "BLOCKCHAIN".equals(from);
+        // The award sender is registered first thing, so it is always held as its id
+        return from == null && fromId == AccountRegistry.AWARD_ID;
     }
 
     public boolean isSignatureValid() {
@@ -66,22 +137,34 @@ public final class Transaction {
             return false;
         }
         try {
-            Signature rsa = Signature.getInstance("SHA256withRSA");
-            rsa.initVerify(publicKey);
-            String dataString = from + to + amount + transactionId;
-            rsa.update(dataString.getBytes(StandardCharsets.UTF_8));
-            return !rsa.verify(signature);
+            return !verifySignature(scheme.newSignature());
         } catch (Exception e) {
             return true;
         }
     }
 
+    /**
+     * Checks the signature with a caller-supplied (possibly reused) verifier.
+     *
+     * @return true only if the signature matches the transaction data
+     */
+    boolean verifySignature(final Signature verifier) {
+        try {
+            verifier.initVerify(publicKey);
+            String dataString = getFrom() + getTo() + amount + transactionId;
+            verifier.update(dataString.getBytes(StandardCharsets.UTF_8));
+            return verifier.verify(signature);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     public String getSignatureBase64() {
         return signature == null ? "null" : Base64.getEncoder().encodeToString(signature);
     }
 
     @Override
     public String toString() {
-        return "[Tx#" + transactionId + "] " + from + " -> " + to + " : " + amount + " (sig=" + getSignatureBase64() + ")";
+        return "[Tx#" + transactionId + "] " + getFrom() + " -> " + getTo() + " : " + amount + " (sig=" + getSignatureBase64() + ")";
     }
 }
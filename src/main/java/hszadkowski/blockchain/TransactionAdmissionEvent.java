@@ -0,0 +1,31 @@
+package hszadkowski.blockchain;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One transaction submitted through {@link Blockchain#addTransaction(Transaction)}.
+ */
+@Name("hszadkowski.blockchain.TransactionAdmission")
+@Label("Transaction Admission")
+@Category("Blockchain")
+@Description("Signature verification and balance check of a submitted transaction")
+final class TransactionAdmissionEvent extends Event {
+    @Label("Transaction Id")
+    long transactionId;
+
+    @Label("Verify Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long verifyNanos;
+
+    @Label("Balance Check Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long balanceCheckNanos;
+
+    @Label("Result")
+    String result;
+}
@@ -0,0 +1,83 @@
+package hszadkowski.blockchain;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out disjoint nonce ranges to the miners working on the same block template.
+ * A 64-bit cursor per template is split into an extra nonce (high half, committed in
+ * the header prefix) and the nonce itself (low half), so a miner that exhausts the
+ * 32-bit nonce space simply rolls over to the next extra nonce.
+ */
+public final class WorkCoordinator {
+    static final int RANGE_BITS = 24;
+    static final long RANGE_SIZE = 1L << RANGE_BITS;
+    private static final long NONCE_MASK = 0xffffffffL;
+
+    private final Map<String, AtomicLong> cursors = new ConcurrentHashMap<>();
+    private final boolean randomStart;
+    private volatile int highestBlockId = 0;
+
+    public WorkCoordinator() {
+        this(false);
+    }
+
+    private WorkCoordinator(final boolean randomStart) {
+        this.randomStart = randomStart;
+    }
+
+    /**
+     * A coordinator for a single miner that does not share its nonce space. It starts
+     * at a random extra nonce so independent miners do not retrace each other.
+     */
+    public static WorkCoordinator independent() {
+        return new WorkCoordinator(true);
+    }
+
+    public NonceRange claim(final int blockId, final Hash256 previousHash) {
+        AtomicLong cursor = cursors.get(blockId + ":" + previousHash);
+        if (cursor == null) {
+            cursor = register(blockId, previousHash);
+        }
+        long start = cursor.getAndAdd(RANGE_SIZE);
+        return new NonceRange(start >>> Integer.SIZE, start & NONCE_MASK, (start & NONCE_MASK) + RANGE_SIZE);
+    }
+
+    private AtomicLong register(final int blockId, final Hash256 previousHash) {
+        if (blockId > highestBlockId) {
+            highestBlockId = blockId;
+            cursors.keySet().removeIf(key -> Integer.parseInt(key.substring(0, key.indexOf(':'))) < blockId - 1);
+        }
+        long initial = randomStart ? ThreadLocalRandom.current().nextLong() & ~(RANGE_SIZE - 1) : 0L;
+        return cursors.computeIfAbsent(blockId + ":" + previousHash, key -> new AtomicLong(initial));
+    }
+
+    /**
+     * Nonces {@code [start, end)} to try together with {@code extraNonce}.
+     */
+    public static final class NonceRange {
+        private final long extraNonce;
+        private final long start;
+        private final long end;
+
+        NonceRange(final long extraNonce, final long start, final long end) {
+            this.extraNonce = extraNonce;
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getExtraNonce() {
+            return extraNonce;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package hszadkowski.blockchain;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread pools of the simulation. Mining is CPU-bound and gets one platform thread per
+ * core, or the pinned or measured count; everything that mostly waits gets cheap threads:
+ * virtual ones where the runtime has them, daemon platform threads otherwise.
+ */
+public final class Workers {
+    // Set -Dblockchain.minerThreads=<n> to skip tuning and use exactly n miners
+    static final String MINER_THREADS_PROPERTY = "blockchain.minerThreads";
+    static final long DEFAULT_PROBE_MILLIS = 200;
+    // A doubling of threads has to buy at least this much hash rate to be kept
+    private static final double MIN_SPEEDUP = 1.05;
+    // Practically unreachable, so every probe pass hashes all its lanes
+    private static final Hash256 PROBE_TARGET = Hash256.ZERO;
+
+    private static final ThreadFactory VIRTUAL_THREADS = virtualThreadFactory();
+
+    private Workers() {
+    }
+
+    /**
+     * The pinned miner count if one was configured, otherwise the number of processors.
+     */
+    public static int minerThreads() {
+        return Integer.getInteger(MINER_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static boolean isMinerCountPinned() {
+        return Integer.getInteger(MINER_THREADS_PROPERTY) != null;
+    }
+
+    public static ExecutorService newMinerPool(final int threads) {
+        return Executors.newFixedThreadPool(threads, named("miner-", false));
+    }
+
+    /**
+     * Executor for tasks that mostly wait: admission, event delivery, simulated clients.
+     */
+    public static ExecutorService newIoExecutor() {
+        return Executors.newCachedThreadPool(ioThreadFactory());
+    }
+
+    public static ThreadFactory ioThreadFactory() {
+        return VIRTUAL_THREADS != null ? VIRTUAL_THREADS : named("io-", true);
+    }
+
+    static boolean hasVirtualThreads() {
+        return VIRTUAL_THREADS != null;
+    }
+
+    /**
+     * Doubles the number of hashing threads, up to {@code maxThreads}, for as long as
+     * that still raises the measured hash rate noticeably.
+     *
+     * @return the smallest thread count that got close to the best rate
+     */
+    public static int tuneMinerThreads(final int maxThreads, final long probeMillis) throws InterruptedException {
+        return tuneMinerThreads(maxThreads, threads -> measureHashRate(threads, probeMillis));
+    }
+
+    interface RateProbe {
+        double measure(int threads) throws InterruptedException;
+    }
+
+    static int tuneMinerThreads(final int maxThreads, final RateProbe probe) throws InterruptedException {
+        int best = 1;
+        double bestRate = probe.measure(1);
+        int threads = 1;
+        while (threads < maxThreads) {
+            threads = Math.min(threads * 2, maxThreads);
+            double rate = probe.measure(threads);
+            if (rate < bestRate * MIN_SPEEDUP) {
+                break;
+            }
+            best = threads;
+            bestRate = rate;
+        }
+        return best;
+    }
+
+    /**
+     * Hashes per second of {@code threads} threads running the miner's inner loop.
+     */
+    static double measureHashRate(final int threads, final long probeMillis) throws InterruptedException {
+        ExecutorService pool = newMinerPool(threads);
+        LongAdder hashes = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < threads; i++) {
+                byte[] prefix = BlockHeader.prefix(i, Hash256.ZERO, new byte[Sha256.DIGEST_LENGTH], 0L, 0L);
+                pool.execute(() -> {
+                    HashingEngine engine = HashingEngine.forCurrentThread();
+                    engine.prepare(prefix);
+                    ready.countDown();
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(probeMillis);
+                    int lanes = engine.getLanes();
+                    int nonce = 0;
+                    while (System.nanoTime() < deadline) {
+                        engine.tryNonces(nonce, lanes, PROBE_TARGET);
+                        nonce += lanes;
+                    }
+                    hashes.add(nonce);
+                });
+            }
+            ready.await();
+            long begin = System.nanoTime();
+            start.countDown();
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            double seconds = (System.nanoTime() - begin) / (double) TimeUnit.SECONDS.toNanos(1);
+            return hashes.sum() / seconds;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory named(final String prefix, final boolean daemon) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + counter.incrementAndGet());
+            thread.setDaemon(daemon);
+            return thread;
+        };
+    }
+
+    /**
+     * {@code Thread.ofVirtual().factory()}, looked up reflectively so the project still
+     * builds for Java 17, where virtual threads do not exist yet.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
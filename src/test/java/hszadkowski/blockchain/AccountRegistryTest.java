@@ -0,0 +1,86 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class AccountRegistryTest {
+
+    @Test
+    @DisplayName("Addresses get dense ids once and resolve back to one shared name")
+    void testDenseIds() {
+        AccountRegistry registry = new AccountRegistry();
+        assertEquals(AccountRegistry.UNKNOWN, registry.find("Alice"), "Lookups do not register.");
+        assertEquals(0, registry.size());
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(i, registry.idOf("account" + i), "Ids are handed out densely.");
+        }
+        assertEquals(200, registry.size());
+        assertEquals(7, registry.idOf(new String("account7")), "A known address keeps its id.");
+        assertEquals(7, registry.find("account7"));
+        assertEquals("account199", registry.nameOf(199));
+        assertThrows(IllegalArgumentException.class, () -> registry.nameOf(200));
+        assertThrows(IllegalArgumentException.class, () -> registry.nameOf(-1));
+    }
+
+    @Test
+    @DisplayName("Concurrent registrations agree on every id")
+    void testConcurrentRegistration() throws Exception {
+        AccountRegistry registry = new AccountRegistry();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(pool.submit(() -> {
+                    int[] ids = new int[1_000];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = registry.idOf("account" + i);
+                    }
+                    return ids;
+                }));
+            }
+            int[] first = results.get(0).get();
+            for (Future<int[]> result : results) {
+                int[] ids = result.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertEquals(first[i], ids[i]);
+                    assertEquals("account" + i, registry.nameOf(ids[i]));
+                }
+            }
+            assertEquals(1_000, registry.size(), "Every address was registered exactly once.");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Transactions register their addresses only when their ids are asked for")
+    void testTransactionsShareAddresses() {
+        AccountRegistry registry = AccountRegistry.shared();
+        Transaction first = new Transaction("Carol-registry", new String("Dave-registry"), 5, 1, null, null);
+        Transaction second = new Transaction(new String("Carol-registry"), "Dave-registry", 7, 2, null, null);
+        assertEquals(AccountRegistry.UNKNOWN, first.findFromId(), "Creating a transaction does not register.");
+        assertEquals(AccountRegistry.UNKNOWN, registry.find("Dave-registry"));
+
+        assertEquals(first.getFromId(), second.getFromId());
+        assertEquals(first.getToId(), second.getToId());
+        assertEquals(first.getFromId(), second.findFromId());
+        assertEquals("Dave-registry", registry.nameOf(second.getToId()));
+        Transaction third = new Transaction(new String("Carol-registry"), new String("Dave-registry"), 9, 3, null, null);
+        assertSame(registry.nameOf(first.getFromId()), third.getFrom(),
+                "Known addresses are held as ids, so their names come from the registry.");
+        assertSame(first.getTo(), third.getTo());
+        assertEquals(AccountRegistry.AWARD_ID, new Transaction(Ledger.AWARD_SENDER, "Alice", 100).getFromId());
+        assertEquals(0, AccountRegistry.AWARD_ID, "The award sender is registered first.");
+    }
+}
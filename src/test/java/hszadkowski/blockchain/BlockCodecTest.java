@@ -0,0 +1,103 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public class BlockCodecTest {
+
+    @Test
+    @DisplayName("Blocks round-trip through the binary form, also from a direct buffer")
+    void testBlockRoundTrip() throws Exception {
+        Client alice = new Client("Alice");
+        Transaction signed = alice.createTransaction("Alice", "Bób", 42);
+        Hash256 previous = TestHashes.hash("00ab");
+        Hash256 hash = Hash256.fromHex(StringUtil.applySha256("hash"));
+        List<Transaction> txs = List.of(new Transaction("BLOCKCHAIN", "miner", 100), signed);
+        Block block = new Block(new BlockHeader(7, previous, MerkleTree.of(txs).getRoot(), 123L, 5L, 99, hash), 2,
+                txs, "miner");
+
+        byte[] encoded = BlockCodec.encode(block);
+        assertEquals(BlockCodec.encodedSize(block), encoded.length, "Size must be computed exactly.");
+        assertEquals(BlockCodec.FORMAT_VERSION, encoded[0], "Blocks start with the format version.");
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length + 3);
+        direct.put(new byte[] {9, 9, 9}).put(encoded).flip().position(3);
+        Block decoded = BlockCodec.decodeBlock(direct.slice());
+
+        assertEquals(7, decoded.getId());
+        assertEquals(123L, decoded.getTimestamp());
+        assertEquals(previous, decoded.getPreviousHash());
+        assertEquals(hash, decoded.getHash());
+        assertEquals(99, decoded.getMagicNumber());
+        assertEquals(5L, decoded.getExtraNonce());
+        assertEquals(2, decoded.getGenerationTime());
+        assertEquals("miner", decoded.getMinerName());
+        Transaction tx = decoded.getTransactions().get(1);
+        assertEquals("Bób", tx.getTo());
+        assertEquals(signed.getTransactionId(), tx.getTransactionId());
+        assertArrayEquals(signed.getSignature(), tx.getSignature());
+        assertEquals(alice.getPublicKey(), tx.getPublicKey());
+        assertFalse(tx.isSignatureValid(), "Decoded signature still verifies (inverted result).");
+        assertNull(decoded.getTransactions().get(0).getSignature(), "Absent signatures stay absent.");
+        assertArrayEquals(encoded, BlockCodec.encode(BlockCodec.decodeBlock(ByteBuffer.wrap(encoded))),
+                "The encoding is canonical.");
+    }
+
+    @Test
+    @DisplayName("Transaction encoding does not depend on display formatting")
+    void testTransactionEncodingIsCompact() throws Exception {
+        Transaction tx = new Client("Alice").createTransaction("Alice", "Bob", 1);
+        byte[] encoded = BlockCodec.encode(tx);
+        assertEquals(BlockCodec.encodedSize(tx), encoded.length);
+        assertEquals(tx.toString(), BlockCodec.decodeTransaction(ByteBuffer.wrap(encoded)).toString());
+    }
+
+    @Test
+    @DisplayName("Malformed input is rejected")
+    void testRejectsMalformedInput() {
+        Block block = new Block(1, 0L, Hash256.ZERO, Hash256.ZERO, 0, 0, List.of(), "m");
+        byte[] encoded = BlockCodec.encode(block);
+
+        byte[] wrongVersion = encoded.clone();
+        wrongVersion[0] = BlockCodec.FORMAT_VERSION + 1;
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.decodeBlock(ByteBuffer.wrap(wrongVersion)));
+        wrongVersion[0] = 0;
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.decodeBlock(ByteBuffer.wrap(wrongVersion)));
+
+        ByteBuffer corruptCount = ByteBuffer.wrap(encoded.clone());
+        corruptCount.putInt(encoded.length - Integer.BYTES, 1000);
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.decodeBlock(corruptCount));
+
+        ByteBuffer missingString = ByteBuffer.allocate(16).putLong(1).putShort((short) 0xFFFF).flip();
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.decodeTransaction(missingString));
+
+        ByteBuffer badKey = ByteBuffer.wrap(BlockCodec.encode(new Transaction("a", "b", 1, 1, null, null)));
+        badKey.limit(badKey.limit() - 2);
+        ByteBuffer withKey = ByteBuffer.allocate(64).put(badKey).putShort((short) 2).put((byte) 1).put((byte) 2);
+        withKey.flip();
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.decodeTransaction(withKey));
+
+        Transaction huge = new Transaction("a".repeat(70_000), "b", 1, 1, null, null);
+        assertThrows(IllegalArgumentException.class, () -> BlockCodec.encode(huge));
+    }
+
+    @Test
+    @DisplayName("Blocks in older formats, hashed over an older header, are refused")
+    void testRefusesOlderFormats() {
+        byte[] encoded = BlockCodec.encode(new Block(1, 0L, Hash256.ZERO, Hash256.ZERO, 0, 3L, List.of(), "m"));
+        for (byte version = 1; version < BlockCodec.FORMAT_VERSION; version++) {
+            encoded[0] = version;
+            assertThrows(IllegalArgumentException.class, () -> BlockCodec.decodeBlock(ByteBuffer.wrap(encoded)),
+                    "Version " + version + " is no longer read.");
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class BlockStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private Block block(final int id, final Transaction... extra) {
+        List<Transaction> txs = new ArrayList<>();
+        txs.add(new Transaction("BLOCKCHAIN", "miner" + id, 100));
+        txs.addAll(List.of(extra));
+        BlockHeader header = new BlockHeader(id, TestHashes.hash("e" + id), MerkleTree.of(txs).getRoot(), 1000L + id, id,
+                id * 7, TestHashes.hash("f" + id));
+        return new Block(header, 3, txs, "miner" + id);
+    }
+
+    private void assertSameBlock(final Block expected, final Block actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getPreviousHash(), actual.getPreviousHash());
+        assertEquals(expected.getHash(), actual.getHash());
+        assertEquals(expected.getMagicNumber(), actual.getMagicNumber());
+        assertEquals(expected.getExtraNonce(), actual.getExtraNonce());
+        assertEquals(expected.getGenerationTime(), actual.getGenerationTime());
+        assertEquals(expected.getMinerName(), actual.getMinerName());
+        assertEquals(expected.getTransactions().size(), actual.getTransactions().size());
+        for (int i = 0; i < expected.getTransactions().size(); i++) {
+            assertEquals(expected.getTransactions().get(i).toString(), actual.getTransactions().get(i).toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Blocks survive a reopen, including signed transactions and rolled segments")
+    void testRoundTripAcrossSegments() throws Exception {
+        Client alice = new Client("Alice");
+        Transaction signed = alice.createTransaction("Alice", "Bob", 5);
+        try (BlockStore store = BlockStore.open(dir, 600, 2)) {
+            for (int id = 1; id <= 10; id++) {
+                store.append(id == 4 ? block(id, signed) : block(id));
+            }
+            assertTrue(store.segmentCount() > 2, "Small segments should have rolled over.");
+            assertSameBlock(block(2), store.read(2));
+            assertSameBlock(block(10), store.read(10));
+        }
+
+        try (BlockStore reopened = BlockStore.open(dir, 600, 2)) {
+            assertEquals(10, reopened.size());
+            List<Block> all = reopened.readAll();
+            for (int id = 1; id <= 10; id++) {
+                if (id != 4) {
+                    assertSameBlock(block(id), all.get(id - 1));
+                }
+            }
+            Transaction restored = all.get(3).getTransactions().get(1);
+            assertEquals(signed.toString(), restored.toString());
+            assertEquals(alice.getPublicKey(), restored.getPublicKey());
+            assertTrue(new SignatureVerifier().verify(restored), "Restored signature should still verify.");
+
+            reopened.append(block(11));
+            assertSameBlock(block(11), reopened.read(11));
+        }
+    }
+
+    @Test
+    @DisplayName("A torn record at the end of the last segment is cut off on reopen")
+    void testRecoversFromTornTail() throws Exception {
+        try (BlockStore store = BlockStore.open(dir)) {
+            store.append(block(1));
+            store.append(block(2));
+        }
+        Path segment = dir.resolve("segment-00000000.log");
+        long intact = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(intact - 3);
+        }
+
+        try (BlockStore reopened = BlockStore.open(dir)) {
+            assertEquals(1, reopened.size(), "Only the intact block should be recovered.");
+            reopened.append(block(2));
+            assertSameBlock(block(2), reopened.read(2));
+        }
+    }
+
+    @Test
+    @DisplayName("Sealed segments are rescanned when their index is damaged")
+    void testRebuildsDamagedIndex() throws Exception {
+        try (BlockStore store = BlockStore.open(dir, 300, 1)) {
+            for (int id = 1; id <= 6; id++) {
+                store.append(block(id));
+            }
+        }
+        Files.write(dir.resolve("segment-00000000.idx"), new byte[] {1, 2, 3});
+
+        try (BlockStore reopened = BlockStore.open(dir, 300, 1)) {
+            assertEquals(6, reopened.size());
+            assertSameBlock(block(1), reopened.read(1));
+        }
+    }
+
+    @Test
+    @DisplayName("Appends must be contiguous and reads must be in range")
+    void testRejectsGapsAndUnknownIds() throws Exception {
+        try (BlockStore store = BlockStore.open(dir)) {
+            assertThrows(IllegalArgumentException.class, () -> store.append(block(2)));
+            store.append(block(1));
+            assertThrows(IllegalArgumentException.class, () -> store.read(2));
+            assertNull(store.read(1).getTransactions().get(0).getPublicKey(), "Award transactions have no key.");
+        }
+        Files.createFile(dir.resolve("segment-00000005.log"));
+        assertThrows(IOException.class, () -> BlockStore.open(dir));
+    }
+
+    @Test
+    @DisplayName("Files that only look like segments are left alone on reopen")
+    void testIgnoresStrayFiles() throws Exception {
+        try (BlockStore store = BlockStore.open(dir)) {
+            store.append(block(1));
+        }
+        for (String name : List.of("segment-backup.log", "segment-00000000.log.log", "segment-9999999999.log")) {
+            Files.createFile(dir.resolve(name));
+        }
+
+        try (BlockStore reopened = BlockStore.open(dir)) {
+            assertEquals(1, reopened.size());
+            reopened.append(block(2));
+            assertSameBlock(block(2), reopened.read(2));
+        }
+    }
+
+    @Test
+    @DisplayName("A blockchain backed by a store reloads its chain, ledger and tip")
+    void testBlockchainRestoresFromStore() throws Exception {
+        Hash256 target;
+        Hash256 tip;
+        try (BlockStore store = BlockStore.open(dir)) {
+            Blockchain chain = new Blockchain(10, Executors.newSingleThreadExecutor(), 100, store);
+            chain.addBlock(TestBlocks.next(chain, 3, List.of(new Transaction("BLOCKCHAIN", "Alice", 100))));
+            while (chain.getNextBlockId() <= Retargeter.DEFAULT_WINDOW) {
+                chain.addBlock(TestBlocks.next(chain, 0, List.of(new Transaction("BLOCKCHAIN", "Bob", 100))));
+            }
+            target = chain.getTarget();
+            tip = chain.getLastHash();
+        }
+
+        try (BlockStore store = BlockStore.open(dir)) {
+            Blockchain restored = new Blockchain(10, Executors.newSingleThreadExecutor(), 100, store);
+            assertEquals(Retargeter.DEFAULT_WINDOW + 1, restored.getNextBlockId());
+            assertEquals(tip, restored.getLastHash());
+            assertEquals(2, restored.getDifficulty());
+            assertEquals(target, restored.getTarget(), "The target is replayed from the block timestamps.");
+            assertEquals(200, restored.getBalance("Alice"));
+            assertTrue(restored.isLedgerConsistent());
+        }
+    }
+
+    @Test
+    @DisplayName("A blockchain with snapshots restores its ledger from the newest one")
+    void testBlockchainRestoresFromSnapshot() throws Exception {
+        Path snapshotDir = dir.resolve("snapshots");
+        try (BlockStore store = BlockStore.open(dir); LedgerSnapshots snapshots = LedgerSnapshots.open(snapshotDir, 2)) {
+            Blockchain chain = new Blockchain(10, Executors.newSingleThreadExecutor(), 100, store, snapshots);
+            for (int id = 1; id <= 5; id++) {
+                chain.addBlock(TestBlocks.next(chain, 1_000, List.of(new Transaction("BLOCKCHAIN", "Alice", 100))));
+            }
+        }
+
+        try (BlockStore store = BlockStore.open(dir); LedgerSnapshots snapshots = LedgerSnapshots.open(snapshotDir, 2)) {
+            assertEquals(List.of(4, 2), snapshots.heights(), "Snapshots are taken every two blocks.");
+            Blockchain restored = new Blockchain(10, Executors.newSingleThreadExecutor(), 100, store, snapshots);
+            assertEquals(6, restored.getNextBlockId());
+            assertEquals(600, restored.getBalance("Alice"));
+            assertEquals(500, restored.getBalanceAt("Alice", 4));
+            assertTrue(restored.isLedgerConsistent(), "Snapshot plus replay must match a full rescan.");
+            assertThrows(IllegalArgumentException.class, () -> restored.getBalanceAt("Alice", 3),
+                    "The ledger started from the snapshot at height 4.");
+        }
+    }
+
+    @Test
+    @DisplayName("A failed snapshot is reported to listeners and the chain carries on")
+    void testSnapshotFailureReachesListeners() throws Exception {
+        Path snapshotDir = dir.resolve("snapshots");
+        try (BlockStore store = BlockStore.open(dir); LedgerSnapshots snapshots = LedgerSnapshots.open(snapshotDir, 1)) {
+            Blockchain chain = new Blockchain(10, Executors.newSingleThreadExecutor(), 100, store, snapshots);
+            CompletableFuture<Integer> failedAt = new CompletableFuture<>();
+            chain.getEvents().subscribe(new BlockchainListener() {
+                @Override
+                public void onSnapshotFailed(final int height, final Throwable cause) {
+                    failedAt.complete(height);
+                }
+            });
+            Files.delete(snapshotDir);
+
+            chain.addBlock(TestBlocks.next(chain, 1_000, List.of(new Transaction("BLOCKCHAIN", "Alice", 100))));
+            assertEquals(1, failedAt.get(10, TimeUnit.SECONDS));
+            assertEquals(2, chain.getNextBlockId(), "The block is kept even though its snapshot was not.");
+            chain.getEvents().close();
+        }
+    }
+}
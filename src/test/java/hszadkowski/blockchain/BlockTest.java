@@ -17,8 +17,8 @@ public class BlockTest {
     void testBlockInitialization() {
         int id = 1;
         long timestamp = 1670000000L;
-        String previousHash = "0000000000abcdef";
-        String hash = "abcdef1234567890";
+        Hash256 previousHash = TestHashes.hash("0000000000abcdef");
+        Hash256 hash = TestHashes.hash("abcdef1234567890");
         int magicNumber = 42;
         long generationTime = 10;
         String minerName = "Alice";
@@ -40,8 +40,8 @@ public class BlockTest {
     void testBlockToString_NoTransactions() {
         int id = 1;
         long timestamp = 1670000000L;
-        String previousHash = "0000000000abcdef";
-        String hash = "abcdef1234567890";
+        Hash256 previousHash = TestHashes.hash("0000000000abcdef");
+        Hash256 hash = TestHashes.hash("abcdef1234567890");
         int magicNumber = 42;
         long generationTime = 10;
         String minerName = "Alice";
@@ -62,8 +62,8 @@ public class BlockTest {
     void testBlockToString_WithTransactions() {
         int id = 2;
         long timestamp = 1670000000L;
-        String previousHash = "abcdef1234567890";
-        String hash = "123456abcdef7890";
+        Hash256 previousHash = TestHashes.hash("abcdef1234567890");
+        Hash256 hash = TestHashes.hash("123456abcdef7890");
         int magicNumber = 123;
         long generationTime = 15;
         String minerName = "Bob";
@@ -92,8 +92,8 @@ public class BlockTest {
     void testHashGetters() {
         int id = 3;
         long timestamp = 1670000000L;
-        String previousHash = "prev123hash";
-        String hash = "new456hash";
+        Hash256 previousHash = TestHashes.hash("0123");
+        Hash256 hash = TestHashes.hash("0456");
         int magicNumber = 456;
         long generationTime = 5;
         String minerName = "Charlie";
@@ -4,9 +4,14 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
 
 import java.security.*;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 public class BlockchainTest {
 
@@ -39,9 +44,11 @@ public class BlockchainTest {
 
         assertEquals(0, blockchain.getDifficulty(),
                 "Difficulty should start at 0.");
+        assertEquals(Hash256.MAX, blockchain.getTarget(),
+                "Any hash meets the initial target.");
 
-        assertEquals("0", blockchain.getLastHash(),
-                "Last hash should be '0' when the chain is empty.");
+        assertEquals(Hash256.ZERO, blockchain.getLastHash(),
+                "Last hash should be zero when the chain is empty.");
 
         assertFalse(blockchain.hasReachedTarget(),
                 "Target should not be reached at initialization.");
@@ -50,20 +57,14 @@ public class BlockchainTest {
     @Test
     @DisplayName("Add block with no previous blocks (genesis scenario)")
     void testAddBlock_GenesisBlock() {
-        Block genesis = new Block(
-                1,
-                System.currentTimeMillis(),
-                "0",
-                "0000validhash",
-                12345,
-                2,
-                List.of(new Transaction("BLOCKCHAIN", "Alice", 100)),
-                "Alice"
-        );
+        Block genesis = TestBlocks.next(blockchain, 2, List.of(new Transaction("BLOCKCHAIN", "Alice", 100)));
 
+        long versionBefore = blockchain.getTipVersion();
         blockchain.addBlock(genesis);
         assertEquals(2, blockchain.getNextBlockId(),
                 "After adding the first block, the nextBlockId should be 2.");
+        assertEquals(versionBefore + 1, blockchain.getTipVersion(),
+                "Accepting a block should publish a new tip version.");
         assertEquals(genesis.getHash(), blockchain.getLastHash(),
                 "Last hash should match the genesis block's hash.");
     }
@@ -71,55 +72,100 @@ public class BlockchainTest {
     @Test
     @DisplayName("Adding a valid block increments chain, modifies transactions, and checks difficulty")
     void testAddBlock_ValidBlock() {
-        Block genesis = new Block(
-                1,
-                System.currentTimeMillis(),
-                "0",
-                "0",
-                9999,
-                2,
-                List.of(new Transaction("BLOCKCHAIN", "Alice", 100)),
-                "Alice"
-        );
-        blockchain.addBlock(genesis);
-        assertEquals(0, blockchain.getDifficulty());
-
-        Block block2 = new Block(
-                2,
-                System.currentTimeMillis(),
-                genesis.getHash(),
-                "0",
-                5555,
-                6,
-                List.of(new Transaction("BLOCKCHAIN", "Bob", 100)),
-                "Bob"
-        );
-        blockchain.addBlock(block2);
+        blockchain = new Blockchain(2 * Retargeter.DEFAULT_WINDOW, Executors.newSingleThreadExecutor());
+        blockchain.addBlock(TestBlocks.next(blockchain, 0, List.of(new Transaction("BLOCKCHAIN", "Alice", 100))));
+        assertEquals(0, blockchain.getDifficulty(),
+                "The first block has no parent to be timed against and counts as on schedule.");
+
+        blockchain.addBlock(TestBlocks.next(blockchain, 0, List.of(new Transaction("BLOCKCHAIN", "Bob", 100))));
         assertEquals(2, blockchain.getNextBlockId() - 1,
                 "Blockchain should now have 2 blocks in total.");
-        assertEquals(0, blockchain.getDifficulty(),
-                "After generationTime=6, difficulty should decrement by 1 (from 1 back to 0).");
+        assertEquals(0, blockchain.getDifficulty(), "The target holds until a whole window has been timed.");
+
+        while (blockchain.getNextBlockId() <= Retargeter.DEFAULT_WINDOW) {
+            blockchain.addBlock(TestBlocks.next(blockchain, 0, List.of(new Transaction("BLOCKCHAIN", "Bob", 100))));
+        }
+        assertEquals(2, blockchain.getDifficulty(),
+                "A window of instant blocks divides the target by the maximum step of 4.");
     }
 
     @Test
     @DisplayName("Add invalid block (wrong previousHash) is rejected")
     void testAddBlock_InvalidPreviousHash() {
-        Block invalidBlock = new Block(
-                1,
-                System.currentTimeMillis(),
-                "NOT_ZERO", // invalid previous hash
-                "0000validhash",
-                123,
-                0,
-                List.of(new Transaction("BLOCKCHAIN", "Alice", 100)),
-                "Alice"
-        );
+        Block invalidBlock = TestBlocks.mine(1, TestHashes.hash("1"), Hash256.MAX, 0,
+                List.of(new Transaction("BLOCKCHAIN", "Alice", 100)));
         blockchain.addBlock(invalidBlock);
 
-        assertEquals("0", blockchain.getLastHash(),
-                "The last hash should remain '0' if the block was invalid.");
+        assertEquals(Hash256.ZERO, blockchain.getLastHash(),
+                "The last hash should remain zero if the block was invalid.");
         assertEquals(1, blockchain.getNextBlockId(),
                 "Chain is still empty => next ID=1. The invalid block not added.");
+        assertEquals(0, blockchain.getTipVersion(),
+                "A rejected block must not change the tip version.");
+    }
+
+    @Test
+    @DisplayName("Live blocks face the same header and funds checks as stored ones at startup")
+    void testAddBlock_SameRulesAsValidator() throws Exception {
+        List<Transaction> award = List.of(new Transaction("BLOCKCHAIN", "Alice", 100));
+        Block genuine = TestBlocks.next(blockchain, 2, award);
+        Block skipped = TestBlocks.mine(2, Hash256.ZERO, Hash256.MAX, 2, award);
+        Block tampered = new Block(1, genuine.getTimestamp(), Hash256.ZERO, TestHashes.hash("0"),
+                genuine.getMagicNumber(), 2, award, "Alice");
+        List<Transaction> overspend = List.of(new Transaction("BLOCKCHAIN", "Alice", 100),
+                aliceClient.createTransaction("Alice", "Bob", 60), aliceClient.createTransaction("Alice", "Carl", 60));
+        Block unfunded = TestBlocks.next(blockchain, 2, overspend);
+        Block future = TestBlocks.next(blockchain, System.currentTimeMillis() + 2 * ChainState.MAX_FUTURE_MILLIS, 2,
+                award);
+
+        for (Block block : List.of(skipped, tampered, unfunded, future)) {
+            blockchain.addBlock(block);
+            assertEquals(1, blockchain.getNextBlockId(), "Block " + block.getHash() + " must be rejected.");
+        }
+        blockchain.addBlock(genuine);
+        assertEquals(2, blockchain.getNextBlockId());
+        blockchain.addBlock(TestBlocks.next(blockchain, genuine.getTimestamp() - 1, 2, award));
+        assertEquals(2, blockchain.getNextBlockId(), "A block may not precede its parent.");
+        ChainValidator validator = new ChainValidator(ForkJoinPool.commonPool(), blockchain.getBlockIntervalMillis());
+        assertTrue(validator.validate(List.of(genuine)).isValid(),
+                "What was accepted live passes at startup.");
+    }
+
+    @Test
+    @DisplayName("A block confirming an equal copy clears the pending original and mining goes on")
+    void testAddBlock_ConfirmsEqualCopy() throws Exception {
+        Transaction payment = aliceClient.createTransaction("Alice", "Bob", 60);
+        Transaction overspend = aliceClient.createTransaction("Alice", "Carl", 30);
+        blockchain.addTransaction(payment);
+        blockchain.addTransaction(overspend);
+        assertEquals(2, blockchain.getPendingTransactionCount());
+
+        Transaction copy = BlockCodec.decodeTransaction(ByteBuffer.wrap(BlockCodec.encode(payment)));
+        Transaction other = aliceClient.createTransaction("Alice", "Dave", 20);
+        blockchain.addBlock(TestBlocks.next(blockchain, 2,
+                List.of(new Transaction("BLOCKCHAIN", "Bob", 100), copy, other)));
+        assertEquals(2, blockchain.getNextBlockId());
+        assertEquals(0, blockchain.getPendingTransactionCount(),
+                "The copy confirmed the payment, and the 30 no longer fit the 20 Alice has left.");
+
+        blockchain.addBlock(TestBlocks.next(blockchain, 2, blockchain.collectTransactionsForNewBlock("Bob")));
+        assertEquals(3, blockchain.getNextBlockId(), "The next template is valid again.");
+    }
+
+    @Test
+    @DisplayName("A transaction id may appear only once, in one block of the chain")
+    void testAddBlock_RepeatedTransaction() throws Exception {
+        Transaction payment = aliceClient.createTransaction("Alice", "Bob", 10);
+        Transaction award = new Transaction("BLOCKCHAIN", "Alice", 100);
+        blockchain.addBlock(TestBlocks.next(blockchain, 2, List.of(award, payment, payment)));
+        assertEquals(1, blockchain.getNextBlockId(), "The same payment twice in one block is rejected.");
+
+        blockchain.addBlock(TestBlocks.next(blockchain, 2, List.of(award, payment)));
+        assertEquals(2, blockchain.getNextBlockId());
+        blockchain.addBlock(TestBlocks.next(blockchain, 2, List.of(award, payment)));
+        assertEquals(2, blockchain.getNextBlockId(), "A payment already in the chain cannot be replayed.");
+        assertEquals(AdmissionResult.DUPLICATE, blockchain.addTransactions(List.of(payment)).get(0).join(),
+                "Nor can it be queued again.");
     }
 
     @Test
@@ -132,18 +178,7 @@ public class BlockchainTest {
 
         Transaction invalidTx = new Transaction("Alice", "Bob", 50, txId, badSignature, aliceClient.getPublicKey());
 
-        Block block = new Block(
-                1,
-                System.currentTimeMillis(),
-                "0",
-                "0",
-                999,
-                2,
-                List.of(invalidTx),
-                "Alice"
-        );
-
-        blockchain.addBlock(block);
+        blockchain.addBlock(TestBlocks.next(blockchain, 2, List.of(invalidTx)));
 
         assertEquals(0, blockchain.getDifficulty(),
                 "Difficulty does not change because block was rejected");
@@ -152,19 +187,29 @@ public class BlockchainTest {
     }
 
     @Test
-    @DisplayName("Adjust difficulty logic for generationTime < 1 and > 5")
+    @DisplayName("Fast blocks lower the target at most fourfold, slow ones raise it back")
     void testAdjustDifficulty() {
-        blockchain.adjustDifficulty(0);
-        assertEquals(1, blockchain.getDifficulty(),
-                "Generation time=0 => difficulty++ => from 0 to 1");
+        blockchain = new Blockchain(3 * Retargeter.DEFAULT_WINDOW, Executors.newSingleThreadExecutor());
+        assertEquals(Retargeter.DEFAULT_INTERVAL_MILLIS, blockchain.getBlockIntervalMillis());
+        addBlocks(blockchain, Retargeter.DEFAULT_WINDOW, 0);
+        assertEquals(2, blockchain.getDifficulty(),
+                "Blocks stamped 0 ms apart => target divided by the maximum step of 4 => two more zero bits");
 
-        blockchain.adjustDifficulty(10);
+        addBlocks(blockchain, 2 * Retargeter.DEFAULT_WINDOW, 10_000);
         assertEquals(0, blockchain.getDifficulty(),
-                "Generation time=10 => difficulty-- => from 1 to 0");
+                "Blocks stamped 10 s apart => target back at the maximum");
+        assertEquals(Hash256.MAX, blockchain.getTarget(), "The target never exceeds the maximum.");
 
-        blockchain.adjustDifficulty(3);
-        assertEquals(0, blockchain.getDifficulty(),
-                "Generation time=3 => stays the same => remains 0");
+        Blockchain slow = new Blockchain(Retargeter.DEFAULT_WINDOW, Executors.newSingleThreadExecutor(), 100, 60_000L);
+        assertEquals(60_000L, slow.getBlockIntervalMillis());
+        addBlocks(slow, Retargeter.DEFAULT_WINDOW, 20_000);
+        assertEquals(1, slow.getDifficulty(), "The interval is configurable per chain.");
+    }
+
+    private static void addBlocks(final Blockchain chain, final int count, final long blockMillis) {
+        for (int i = 0; i < count; i++) {
+            chain.addBlock(TestBlocks.next(chain, blockMillis, List.of(new Transaction("BLOCKCHAIN", "Miner", 100))));
+        }
     }
 
     @Test
@@ -196,6 +241,19 @@ public class BlockchainTest {
                 "Only the miner's award transaction is present. The big TX was rejected (insufficient funds).");
     }
 
+    @Test
+    @DisplayName("Rejected transactions do not register their addresses")
+    void testRejectedTransactionIsNotRegistered() throws Exception {
+        long txId = 1L;
+        byte[] signature = signData("Mallory-rejectedBob9999999" + txId, aliceClient.getPrivateKey());
+        Transaction bigTx = new Transaction("Mallory-rejected", "Bob", 9999999, txId, signature,
+                aliceClient.getPublicKey());
+
+        assertEquals(AdmissionResult.INSUFFICIENT_FUNDS, blockchain.addTransactions(List.of(bigTx)).get(0).join());
+        assertEquals(AccountRegistry.UNKNOWN, AccountRegistry.shared().find("Mallory-rejected"),
+                "Only admitted transactions take an id.");
+    }
+
     @Test
     @DisplayName("Add transaction with valid signature and enough funds is queued")
     void testAddTransaction_ValidSignature() throws Exception {
@@ -218,29 +276,8 @@ public class BlockchainTest {
     @Test
     @DisplayName("Get balance includes blocks in the chain")
     void testGetBalance() {
-        Block blockAlice = new Block(
-                1,
-                System.currentTimeMillis(),
-                "0",
-                "0",
-                1111,
-                2,
-                List.of(new Transaction("BLOCKCHAIN", "Alice", 100)),
-                "Alice"
-        );
-        blockchain.addBlock(blockAlice);
-
-        Block blockBob = new Block(
-                2,
-                System.currentTimeMillis(),
-                blockAlice.getHash(),
-                "0",
-                2222,
-                2,
-                List.of(new Transaction("BLOCKCHAIN", "Bob", 100)),
-                "Bob"
-        );
-        blockchain.addBlock(blockBob);
+        blockchain.addBlock(TestBlocks.next(blockchain, 2, List.of(new Transaction("BLOCKCHAIN", "Alice", 100))));
+        blockchain.addBlock(TestBlocks.next(blockchain, 2, List.of(new Transaction("BLOCKCHAIN", "Bob", 100))));
 
         long aliceBalance = blockchain.getBalance("Alice");
         long bobBalance   = blockchain.getBalance("Bob");
@@ -249,6 +286,10 @@ public class BlockchainTest {
         assertEquals(200, aliceBalance, "Alice should have 200 after the first block's award.");
         assertEquals(200, bobBalance,   "Bob should have 200 after the second block's award.");
         assertEquals(100, carlBalance,  "Carl not in any block => default 100.");
+
+        assertEquals(100, blockchain.getBalanceAt("Alice", 0), "Before genesis Alice has the default 100.");
+        assertEquals(100, blockchain.getBalanceAt("Bob", 1), "Bob received his award only at height 2.");
+        assertTrue(blockchain.isLedgerConsistent(), "Incremental ledger should match a full rescan.");
     }
 
     @Test
@@ -274,36 +315,121 @@ public class BlockchainTest {
         ExecutorService minerExecutor = Executors.newFixedThreadPool(1);
         Blockchain blockchain = new Blockchain(2, minerExecutor);
 
-        Block block1 = new Block(
-                1,
-                System.currentTimeMillis(),
-                "0",
-                "0000validhash",
-                12345,
-                2,
-                List.of(new Transaction("BLOCKCHAIN", "Alice", 100)),
-                "Alice"
-        );
-
-        Block block2 = new Block(
-                2,
-                System.currentTimeMillis(),
-                block1.getHash(),
-                "0000validhash",
-                67890,
-                2,
-                List.of(new Transaction("BLOCKCHAIN", "Bob", 100)),
-                "Bob"
-        );
-
-        blockchain.addBlock(block1);
+        blockchain.addBlock(TestBlocks.next(blockchain, 2, List.of(new Transaction("BLOCKCHAIN", "Alice", 100))));
 
         assertFalse(blockchain.hasReachedTarget(), "Target should not be reached after adding the first block.");
         assertFalse(minerExecutor.isShutdown(), "Executor should not be shut down before reaching the target.");
 
-        blockchain.addBlock(block2);
+        blockchain.addBlock(TestBlocks.next(blockchain, 2, List.of(new Transaction("BLOCKCHAIN", "Bob", 100))));
 
         assertTrue(blockchain.hasReachedTarget(), "Target should be reached after adding enough blocks.");
         assertTrue(minerExecutor.isShutdown(), "Executor should be shut down after reaching the target.");
     }
+
+    @Test
+    @DisplayName("Chain state snapshot is published atomically and read without the chain lock")
+    void testStateSnapshotIsLockFree() throws Exception {
+        blockchain = new Blockchain(2 * Retargeter.DEFAULT_WINDOW, Executors.newSingleThreadExecutor());
+        while (blockchain.getNextBlockId() < Retargeter.DEFAULT_WINDOW) {
+            blockchain.addBlock(TestBlocks.next(blockchain, 0, List.of(new Transaction("BLOCKCHAIN", "Bob", 100))));
+        }
+        Block tip = TestBlocks.next(blockchain, 0, List.of(new Transaction("BLOCKCHAIN", "Alice", 100)));
+        blockchain.addBlock(tip);
+
+        ChainState snapshot = blockchain.getState();
+        assertEquals(Retargeter.DEFAULT_WINDOW, snapshot.getHeight());
+        assertEquals(tip.getHash(), snapshot.getLastHash());
+        assertEquals(2, snapshot.getDifficulty(), "The tip that closed a window retargeted in the same snapshot.");
+        assertEquals(Retargeter.DEFAULT_WINDOW, snapshot.getTipVersion());
+        assertFalse(snapshot.isTargetReached());
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            synchronized (blockchain) {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        writer.start();
+        locked.await();
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+                assertEquals(2, blockchain.getDifficulty());
+                assertEquals(Retargeter.DEFAULT_WINDOW + 1, blockchain.getNextBlockId());
+                assertEquals(tip.getHash(), blockchain.getLastHash());
+                assertFalse(blockchain.hasReachedTarget());
+            }, "Readers must not wait for the chain monitor.");
+        } finally {
+            release.countDown();
+            writer.join();
+        }
+    }
+
+    @Test
+    @DisplayName("Block templates are capped and confirmed transactions leave the mempool")
+    void testMempoolLimitsAndEviction() throws Exception {
+        Blockchain small = new Blockchain(5, Executors.newSingleThreadExecutor(), 1);
+        Transaction first = aliceClient.createTransaction("Alice", "Bob", 10);
+        Transaction second = aliceClient.createTransaction("Alice", "Carl", 10);
+        small.addTransaction(first);
+        small.addTransaction(second);
+        small.addTransaction(first);
+        assertEquals(2, small.getPendingTransactionCount(), "The duplicate should not be queued twice.");
+
+        List<Transaction> template = small.collectTransactionsForNewBlock("MinerXYZ");
+        assertEquals(List.of(first), template.subList(1, template.size()),
+                "Only one pending transaction fits after the award.");
+
+        small.addBlock(TestBlocks.next(small, 2, template));
+        assertEquals(1, small.getPendingTransactionCount(), "The confirmed transaction was evicted.");
+        List<Transaction> next = small.collectTransactionsForNewBlock("MinerXYZ");
+        assertEquals(second, next.get(1));
+    }
+
+    @Test
+    @DisplayName("Inclusion proofs for confirmed transactions verify against headers alone")
+    void testInclusionProofs() throws Exception {
+        Transaction payment = aliceClient.createTransaction("Alice", "Bob", 10);
+        List<Transaction> txs = List.of(new Transaction("BLOCKCHAIN", "MinerXYZ", 100),
+                aliceClient.createTransaction("Alice", "Carl", 1), payment);
+        blockchain.addBlock(TestBlocks.next(blockchain, 2, txs));
+
+        LightVerifier light = new LightVerifier();
+        assertTrue(light.addHeader(blockchain.getHeader(1)), "A mined header should be accepted.");
+
+        InclusionProof proof = blockchain.getInclusionProof(payment.getTransactionId());
+        assertNotNull(proof);
+        assertEquals(2, proof.getIndex());
+        assertEquals(2, proof.getPath().length, "Three leaves need a two-step path.");
+        assertTrue(light.verify(proof));
+
+        assertNull(blockchain.getInclusionProof(Long.MAX_VALUE), "Unknown ids have no proof.");
+        assertThrows(IllegalArgumentException.class, () -> blockchain.getHeader(2));
+    }
+
+    @Test
+    @DisplayName("Batch submission reports a result per transaction and counts pending spend")
+    void testAddTransactionsBatch() throws Exception {
+        Transaction first = aliceClient.createTransaction("Alice", "Bob", 60);
+        Transaction overspend = aliceClient.createTransaction("Alice", "Carl", 60);
+        Transaction rest = aliceClient.createTransaction("Alice", "Carl", 40);
+        Transaction forged = new Transaction("Alice", "Eve", 1, 999_999, new byte[] {1}, aliceClient.getPublicKey());
+
+        List<CompletableFuture<AdmissionResult>> results = blockchain.addTransactions(
+                List.of(first, overspend, forged, rest, first));
+
+        assertEquals(List.of(AdmissionResult.ACCEPTED, AdmissionResult.INSUFFICIENT_FUNDS,
+                        AdmissionResult.INVALID_SIGNATURE, AdmissionResult.ACCEPTED, AdmissionResult.DUPLICATE),
+                results.stream().map(CompletableFuture::join).toList());
+        assertEquals(2, blockchain.getPendingTransactionCount());
+
+        blockchain.addTransaction(aliceClient.createTransaction("Alice", "Dan", 1));
+        assertEquals(2, blockchain.getPendingTransactionCount(),
+                "Single submissions also see the funds promised to pending transactions.");
+    }
 }
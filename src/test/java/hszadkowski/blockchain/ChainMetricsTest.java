@@ -0,0 +1,108 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+public class ChainMetricsTest {
+
+    private static final class MapRegistry implements MetricsRegistry {
+        private final Map<String, DoubleSupplier> gauges = new TreeMap<>();
+
+        @Override
+        public void gauge(final String name, final DoubleSupplier value) {
+            gauges.put(name, value);
+        }
+
+        double get(final String name) {
+            return gauges.get(name).getAsDouble();
+        }
+    }
+
+    @Test
+    @DisplayName("Chain, mempool, signature and miner metrics are readable through a bound registry")
+    void testChainMetrics() throws Exception {
+        Blockchain blockchain = new Blockchain(5, Executors.newSingleThreadExecutor());
+        MapRegistry registry = new MapRegistry();
+        MiningStats early = new MiningStats();
+        blockchain.getMetrics().registerMiner(early);
+        blockchain.getMetrics().bindTo(registry);
+        MiningStats late = new MiningStats();
+        blockchain.getMetrics().registerMiner(late);
+        early.recordTemplate(10, true);
+        late.recordTemplate(20, false);
+
+        Client alice = new Client("Alice");
+        Transaction payment = alice.createTransaction("Alice", "Bob", 10);
+        blockchain.addTransaction(payment);
+        assertEquals(1.0, registry.get("mempool.depth"));
+        assertEquals(BlockCodec.encodedSize(payment), registry.get("mempool.bytes"));
+
+        blockchain.addBlock(TestBlocks.next(blockchain, 1_000L, 3,
+                List.of(new Transaction("BLOCKCHAIN", "Alice", 100), payment)));
+        blockchain.addBlock(TestBlocks.next(blockchain, 1_250L, 3,
+                List.of(new Transaction("BLOCKCHAIN", "Alice", 100))));
+
+        assertEquals(0.0, registry.get("mempool.depth"));
+        assertEquals(1.0, registry.get("mempool.residenceNanos.count"));
+        assertEquals(2.0, registry.get("chain.addBlock.latencyNanos.count"));
+        assertEquals(1.0, registry.get("chain.addTransaction.latencyNanos.count"));
+        assertEquals(250.0, registry.get("chain.blockIntervalMillis.max"));
+        assertEquals(3.0, registry.get("chain.lockWaitNanos.count"), "One wait per critical section entered.");
+        assertEquals(1.0, registry.get("signatures.verified"));
+        assertEquals(1.0, registry.get("signatures.cacheHits"), "The block reused the admission check.");
+        assertTrue(registry.get("signatures.perSecond") > 0);
+        assertEquals(1.0, registry.get("miners.staleTemplates"));
+        assertEquals(0.0, registry.get("events.dropped"));
+        assertEquals(0.0, registry.get("events.listenerFailures"));
+        assertEquals(1.0, registry.get("miner.1.templates"), "Miners registered after binding are published.");
+        assertTrue(registry.get("miner.0.hashRate") > 0);
+        assertEquals(1.0, registry.get("miner.0.staleTemplates"));
+        assertTrue(registry.get("chain.addBlock.latencyNanos.p99") >= registry.get("chain.addBlock.latencyNanos.p50"));
+        assertTrue(registry.get("chain.addBlock.latencyNanos.mean") > 0);
+    }
+
+    @Test
+    @DisplayName("The JMX registry exposes gauges as read-only MBean attributes")
+    void testJmxRegistry() throws Exception {
+        String name = "hszadkowski.blockchain:type=Metrics,name=test";
+        JmxMetricsRegistry registry = JmxMetricsRegistry.register(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(name);
+        try {
+            registry.gauge("answer", () -> 42);
+            assertEquals(42.0, server.getAttribute(objectName, "answer"));
+            assertEquals(1, server.getMBeanInfo(objectName).getAttributes().length);
+
+            AttributeList values = registry.getAttributes(new String[] {"answer", "missing"});
+            assertEquals(List.of(new Attribute("answer", 42.0)), values.asList());
+            assertThrows(AttributeNotFoundException.class, () -> registry.getAttribute("missing"));
+            assertThrows(AttributeNotFoundException.class, () -> registry.setAttribute(new Attribute("answer", 1.0)));
+            assertTrue(registry.setAttributes(values).isEmpty());
+            ReflectionException unknown = assertThrows(ReflectionException.class,
+                    () -> registry.invoke("reset", null, null));
+            assertTrue(unknown.getTargetException() instanceof NoSuchMethodException);
+            assertThrows(ReflectionException.class, () -> server.invoke(objectName, "reset", null, null),
+                    "JMX clients see the standard unknown-operation error.");
+        } finally {
+            server.unregisterMBean(objectName);
+        }
+    }
+}
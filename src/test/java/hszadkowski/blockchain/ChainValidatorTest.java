@@ -0,0 +1,269 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class ChainValidatorTest {
+    private static final long INTERVAL = 1_000L;
+    // Spans several segments, so failures are found across segment boundaries
+    private static final int LENGTH = 3 * ChainValidator.SEGMENT_BLOCKS + 17;
+
+    private final ChainValidator validator = new ChainValidator(ForkJoinPool.commonPool(), INTERVAL);
+
+    /**
+     * Mines a block stamped {@code blockMillis} after the tip of {@code chain}, against the
+     * target the chain so far implies.
+     */
+    private static Block mine(final List<Block> chain, final long blockMillis, final List<Transaction> txs) {
+        int id = chain.size() + 1;
+        Hash256 previous = chain.isEmpty() ? Hash256.ZERO : chain.get(chain.size() - 1).getHash();
+        long timestamp = chain.isEmpty() ? 0 : chain.get(chain.size() - 1).getTimestamp();
+        return TestBlocks.mine(id, previous, targetAfter(chain), timestamp + blockMillis, blockMillis, txs);
+    }
+
+    private static Hash256 targetAfter(final List<Block> chain) {
+        Retargeter retargeter = new Retargeter(INTERVAL, Retargeter.DEFAULT_WINDOW);
+        Hash256 target = Hash256.MAX;
+        long timestamp = 0;
+        for (Block block : chain) {
+            target = retargeter.record(target, retargeter.blockMillis(block.getId(), timestamp, block.getTimestamp()));
+            timestamp = block.getTimestamp();
+        }
+        return target;
+    }
+
+    private static List<Transaction> award() {
+        return List.of(new Transaction("BLOCKCHAIN", "miner", 100));
+    }
+
+    /**
+     * A chain whose blocks all take one interval, so the target stays at the maximum.
+     */
+    private static List<Block> chain(final int length) {
+        List<Block> chain = new ArrayList<>();
+        while (chain.size() < length) {
+            chain.add(mine(chain, INTERVAL, award()));
+        }
+        return chain;
+    }
+
+    @Test
+    @DisplayName("A valid chain passes in full and reports its throughput")
+    void testValidChain() throws Exception {
+        Client alice = new Client("Alice");
+        List<Block> blocks = chain(LENGTH - 2);
+        List<Transaction> payments = new ArrayList<>(award());
+        payments.add(alice.createTransaction("Alice", "Bob", 60));
+        payments.add(alice.createTransaction("Alice", "Carl", 40));
+        blocks.add(mine(blocks, 0, payments));
+        blocks.add(mine(blocks, INTERVAL, award()));
+
+        ChainValidator.Result result = validator.validate(blocks);
+        assertTrue(result.isValid());
+        assertNull(result.getProblem());
+        assertEquals(LENGTH, result.getBlocks());
+        assertEquals(LENGTH, result.getValidBlocks());
+        assertEquals(-1, result.getFirstInvalidId());
+        assertTrue(result.getElapsedNanos() > 0);
+        assertTrue(result.getBlocksPerSecond() > 0);
+
+        assertTrue(new ChainValidator().validate(List.of()).isValid(), "An empty chain is valid.");
+    }
+
+    @Test
+    @DisplayName("Broken links and bad proof of work are found at the earliest block")
+    void testHeaderProblems() {
+        List<Block> blocks = chain(LENGTH);
+        Block original = blocks.get(400);
+        blocks.set(400, new Block(401, 0L, TestHashes.hash("1"), original.getHash(), original.getMagicNumber(),
+                INTERVAL, award(), "miner"));
+        blocks.set(LENGTH - 1, blocks.get(0));
+        ChainValidator.Result result = validator.validate(blocks);
+        assertFalse(result.isValid());
+        assertEquals(ChainValidator.Problem.LINKAGE, result.getProblem());
+        assertEquals(400, result.getValidBlocks());
+        assertEquals(401, result.getFirstInvalidId());
+
+        blocks = chain(LENGTH);
+        original = blocks.get(700);
+        blocks.set(700, new Block(701, original.getTimestamp(), original.getPreviousHash(), original.getHash(),
+                original.getMagicNumber() + 1, INTERVAL, award(), "miner"));
+        result = validator.validate(blocks);
+        assertEquals(ChainValidator.Problem.PROOF_OF_WORK, result.getProblem(), "The hash must recompute.");
+        assertEquals(701, result.getFirstInvalidId());
+
+        blocks = new ArrayList<>();
+        while (blocks.size() < Retargeter.DEFAULT_WINDOW) {
+            blocks.add(mine(blocks, 0, award()));
+        }
+        int id = Retargeter.DEFAULT_WINDOW + 1;
+        Block honest = mine(blocks, INTERVAL, award());
+        // Mined as if the window of instant blocks had not lowered the target
+        List<Transaction> txs = award();
+        byte[] prefix = HashingEngine.headerPrefix(id, honest.getPreviousHash(), txs, honest.getTimestamp(), 0L);
+        Hash256 target = targetAfter(blocks);
+        int nonce = 0;
+        while (HashingEngine.hashHeader(prefix, nonce).compareTo(target) <= 0) {
+            nonce++;
+        }
+        blocks.add(new Block(id, honest.getTimestamp(), honest.getPreviousHash(), HashingEngine.hashHeader(prefix, nonce),
+                nonce, INTERVAL, txs, "miner"));
+        result = validator.validate(blocks);
+        assertEquals(ChainValidator.Problem.PROOF_OF_WORK, result.getProblem(), "The hash must meet the target.");
+        assertEquals(id, result.getFirstInvalidId());
+        blocks.set(id - 1, honest);
+        assertTrue(validator.validate(blocks).isValid());
+
+        List<Block> retimed = new ArrayList<>(blocks.subList(0, 1));
+        Block fast = blocks.get(1);
+        retimed.add(new Block(2, fast.getTimestamp() + INTERVAL, fast.getPreviousHash(), fast.getHash(),
+                fast.getMagicNumber(), INTERVAL, fast.getTransactions(), "miner"));
+        assertEquals(ChainValidator.Problem.PROOF_OF_WORK, validator.validate(retimed).getProblem(),
+                "The timestamp that retargeting uses is committed to by the hash.");
+        retimed.set(1, new Block(fast.getHeader(), INTERVAL, List.of(new Transaction("BLOCKCHAIN", "thief", 100)),
+                "miner"));
+        assertEquals(ChainValidator.Problem.PROOF_OF_WORK, validator.validate(retimed).getProblem(),
+                "A genuine header does not vouch for other transactions.");
+
+        List<Block> backdated = new ArrayList<>(blocks.subList(0, 2));
+        backdated.add(mine(backdated, -1, award()));
+        result = validator.validate(backdated);
+        assertEquals(ChainValidator.Problem.TIMESTAMP, result.getProblem(), "A block may not precede its parent.");
+        assertEquals(3, result.getFirstInvalidId());
+        backdated.set(2, TestBlocks.mine(3, blocks.get(1).getHash(), Hash256.MAX,
+                System.currentTimeMillis() + 2 * ChainState.MAX_FUTURE_MILLIS, INTERVAL, award()));
+        assertEquals(ChainValidator.Problem.TIMESTAMP, validator.validate(backdated).getProblem(),
+                "Nor run far ahead of the clock.");
+    }
+
+    @Test
+    @DisplayName("Bad signatures and overspending stop validation at their block")
+    void testTransactionProblems() throws Exception {
+        Client alice = new Client("Alice");
+        Transaction genuine = alice.createTransaction("Alice", "Bob", 5);
+        Transaction forged = new Transaction("Alice", "Mallory", 50, genuine.getTransactionId() + 1,
+                genuine.getSignature(), alice.getPublicKey());
+
+        List<Block> blocks = chain(300);
+        List<Transaction> txs = new ArrayList<>(award());
+        txs.add(forged);
+        blocks.add(mine(blocks, INTERVAL, txs));
+        ChainValidator.Result result = validator.validate(blocks);
+        assertEquals(ChainValidator.Problem.INVALID_SIGNATURE, result.getProblem());
+        assertEquals(301, result.getFirstInvalidId());
+
+        List<Block> overspent = chain(200);
+        List<Transaction> spend = new ArrayList<>(award());
+        spend.add(alice.createTransaction("Alice", "Bob", 60));
+        spend.add(alice.createTransaction("Alice", "Carl", 60));
+        overspent.add(mine(overspent, INTERVAL, spend));
+        overspent.addAll(blocks.subList(200, 300));
+        result = validator.validate(overspent);
+        assertEquals(ChainValidator.Problem.INSUFFICIENT_FUNDS, result.getProblem(),
+                "Two payments of 60 out of 100 within one block are too much.");
+        assertEquals(201, result.getFirstInvalidId());
+        assertEquals(200, result.getValidBlocks());
+
+        Transaction payment = alice.createTransaction("Alice", "Bob", 5);
+        List<Transaction> pay = new ArrayList<>(award());
+        pay.add(payment);
+        List<Block> replayed = chain(200);
+        replayed.add(mine(replayed, INTERVAL, pay));
+        replayed.add(mine(replayed, INTERVAL, pay));
+        result = validator.validate(replayed);
+        assertEquals(ChainValidator.Problem.DUPLICATE_TRANSACTION, result.getProblem(),
+                "A payment from an earlier block cannot be replayed.");
+        assertEquals(202, result.getFirstInvalidId());
+        pay.add(payment);
+        replayed.set(200, mine(replayed.subList(0, 200), INTERVAL, pay));
+        assertEquals(201, validator.validate(replayed.subList(0, 201)).getFirstInvalidId(),
+                "Nor repeated within one block.");
+    }
+
+    @Test
+    @DisplayName("Signatures below a matched checkpoint are skipped and the saving is reported")
+    void testCheckpoints() throws Exception {
+        Client alice = new Client("Alice");
+        Transaction genuine = alice.createTransaction("Alice", "Bob", 5);
+        Transaction forged = new Transaction("Alice", "Mallory", 50, genuine.getTransactionId() + 1,
+                genuine.getSignature(), alice.getPublicKey());
+        List<Block> blocks = chain(99);
+        List<Transaction> bad = new ArrayList<>(award());
+        bad.add(forged);
+        blocks.add(mine(blocks, INTERVAL, bad));
+        while (blocks.size() < 249) {
+            blocks.add(mine(blocks, INTERVAL, award()));
+        }
+        List<Transaction> good = new ArrayList<>(award());
+        good.add(genuine);
+        blocks.add(mine(blocks, INTERVAL, good));
+        while (blocks.size() < 300) {
+            blocks.add(mine(blocks, INTERVAL, award()));
+        }
+        Checkpoint matching = new Checkpoint(200, blocks.get(199).getHash());
+        Checkpoint beyond = new Checkpoint(1_000, TestHashes.hash("1"));
+
+        ChainValidator.Result result = new ChainValidator(ForkJoinPool.commonPool(), INTERVAL,
+                List.of(new Checkpoint(50, blocks.get(49).getHash()), matching, beyond)).validate(blocks);
+        assertTrue(result.isValid(), "The forged signature lies below the checkpoint.");
+        assertEquals(200, result.getTrustedBlocks());
+        assertEquals(1, result.getSkippedSignatures());
+        assertEquals(1, result.getVerifiedSignatures());
+        assertTrue(result.getEstimatedSavedNanos() > 0);
+
+        result = validator.validate(blocks);
+        assertEquals(ChainValidator.Problem.INVALID_SIGNATURE, result.getProblem());
+        assertEquals(100, result.getFirstInvalidId());
+        assertEquals(0, result.getTrustedBlocks());
+        assertEquals(0, result.getEstimatedSavedNanos(), "Nothing was skipped.");
+
+        Checkpoint wrong = new Checkpoint(200, TestHashes.hash("1"));
+        result = new ChainValidator(ForkJoinPool.commonPool(), INTERVAL, List.of(wrong)).validate(blocks);
+        assertEquals(ChainValidator.Problem.INVALID_SIGNATURE, result.getProblem(),
+                "A checkpoint the chain does not match vouches for nothing.");
+        result = new ChainValidator(ForkJoinPool.commonPool(), INTERVAL, List.of(wrong)).validate(chain(250));
+        assertEquals(ChainValidator.Problem.CHECKPOINT, result.getProblem());
+        assertEquals(200, result.getFirstInvalidId());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new ChainValidator(ForkJoinPool.commonPool(), INTERVAL, List.of(matching, wrong)));
+        new ChainValidator(ForkJoinPool.commonPool(), INTERVAL, List.of(matching, matching));
+    }
+
+    @Test
+    @DisplayName("Balances are replayed from a snapshot taken on the chain, and only from there")
+    void testSnapshotStart() throws Exception {
+        Client alice = new Client("Alice");
+        List<Block> blocks = chain(10);
+        List<Transaction> spend = new ArrayList<>(award());
+        spend.add(alice.createTransaction("Alice", "Bob", 500));
+        blocks.add(mine(blocks, INTERVAL, spend));
+        Map<String, Long> rich = Map.of("Alice", 1_000L);
+
+        assertEquals(ChainValidator.Problem.INSUFFICIENT_FUNDS, validator.validate(blocks).getProblem());
+        ChainValidator.Result result = validator.validate(blocks,
+                new LedgerSnapshots.Snapshot(10, blocks.get(9).getHash(), rich));
+        assertTrue(result.isValid(), "Alice holds 1000 at the snapshot.");
+        assertEquals(11, result.getValidBlocks());
+
+        result = validator.validate(blocks, new LedgerSnapshots.Snapshot(10, blocks.get(8).getHash(), rich));
+        assertEquals(ChainValidator.Problem.INSUFFICIENT_FUNDS, result.getProblem(),
+                "A snapshot from another chain is ignored.");
+        result = validator.validate(blocks, new LedgerSnapshots.Snapshot(12, blocks.get(10).getHash(), rich));
+        assertEquals(ChainValidator.Problem.INSUFFICIENT_FUNDS, result.getProblem(),
+                "A snapshot beyond the chain is ignored.");
+        result = validator.validate(blocks, new LedgerSnapshots.Snapshot(0, Hash256.ZERO, rich));
+        assertEquals(ChainValidator.Problem.INSUFFICIENT_FUNDS, result.getProblem());
+    }
+}
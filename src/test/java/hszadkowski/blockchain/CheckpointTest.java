@@ -0,0 +1,49 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class CheckpointTest {
+
+    @Test
+    @DisplayName("Checkpoints parse from height:hash lists and print the same way")
+    void testParsing() {
+        Hash256 hash = Hash256.fromHex(StringUtil.applySha256("block"));
+        Checkpoint checkpoint = Checkpoint.parse(" 12 : " + hash + " ");
+        assertEquals(12, checkpoint.getHeight());
+        assertEquals(hash, checkpoint.getHash());
+        assertEquals("12:" + hash, checkpoint.toString());
+
+        List<Checkpoint> all = Checkpoint.parseAll("12:" + hash + ",, 30:" + Hash256.ZERO);
+        assertEquals(2, all.size(), "Empty entries are skipped.");
+        assertEquals(30, all.get(1).getHeight());
+        assertTrue(Checkpoint.parseAll(" ").isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> Checkpoint.parse("12"));
+        assertThrows(IllegalArgumentException.class, () -> Checkpoint.parse("x:" + hash));
+        assertThrows(IllegalArgumentException.class, () -> Checkpoint.parse("0:" + hash), "Heights start at 1.");
+        assertThrows(IllegalArgumentException.class, () -> Checkpoint.parse("12:abc"));
+    }
+
+    @Test
+    @DisplayName("Checkpoints can be given as a system property")
+    void testSystemProperty() {
+        String previous = System.getProperty(Checkpoint.CHECKPOINTS_PROPERTY);
+        try {
+            System.setProperty(Checkpoint.CHECKPOINTS_PROPERTY, "7:" + Hash256.MAX);
+            assertEquals(Hash256.MAX, Checkpoint.fromSystemProperties().get(0).getHash());
+            System.clearProperty(Checkpoint.CHECKPOINTS_PROPERTY);
+            assertTrue(Checkpoint.fromSystemProperties().isEmpty());
+        } finally {
+            if (previous != null) {
+                System.setProperty(Checkpoint.CHECKPOINTS_PROPERTY, previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+public class EventDispatcherTest {
+
+    @Test
+    @DisplayName("Chain events reach listeners in order, off the calling thread")
+    void testEventsFromBlockchain() throws Exception {
+        Blockchain blockchain = new Blockchain(5, Executors.newSingleThreadExecutor());
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        Thread caller = Thread.currentThread();
+        blockchain.getEvents().subscribe(new BlockchainListener() {
+            @Override
+            public void onBlockAccepted(final Block block) {
+                received.add((Thread.currentThread() != caller) + " block " + block.getId());
+            }
+
+            @Override
+            public void onTransactionRejected(final Transaction transaction, final AdmissionResult reason) {
+                received.add("rejected " + reason);
+            }
+
+            @Override
+            public void onDifficultyAdjusted(final Hash256 previous, final Hash256 next, final long generationMillis) {
+                received.add("difficulty " + Math.round(Retargeter.difficultyBits(previous)) + "->"
+                        + Math.round(Retargeter.difficultyBits(next)));
+            }
+        });
+
+        Client alice = new Client("Alice");
+        blockchain.addTransaction(alice.createTransaction("Alice", "Bob", 500));
+        blockchain.addBlock(TestBlocks.next(blockchain, 0, List.of(new Transaction("BLOCKCHAIN", "Alice", 100))));
+        blockchain.addBlock(TestBlocks.next(blockchain, 0, List.of(new Transaction("BLOCKCHAIN", "Alice", 100))));
+        blockchain.getEvents().close();
+
+        assertEquals(List.of("rejected INSUFFICIENT_FUNDS", "true block 1", "difficulty 0->0", "true block 2",
+                "difficulty 0->0"), received,
+                "Every block is reported to the retargeter, which holds the target until its window is full.");
+        BlockchainListener silent = new BlockchainListener() { };
+        silent.onBlockAccepted(null);
+        silent.onTransactionRejected(null, AdmissionResult.DUPLICATE);
+        silent.onDifficultyAdjusted(Hash256.MAX, Hash256.MAX, 3);
+        silent.onSnapshotFailed(2, new IOException("unused"));
+        assertThrows(IllegalStateException.class, () -> blockchain.getEvents().subscribe(silent),
+                "A closed dispatcher takes no new listeners.");
+    }
+
+    @Test
+    @DisplayName("A full queue drops events instead of blocking, and failing listeners are isolated")
+    void testBackpressureAndFailures() throws Exception {
+        EventDispatcher dispatcher = new EventDispatcher(3);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.subscribe(new BlockchainListener() {
+            @Override
+            public void onDifficultyAdjusted(final Hash256 previous, final Hash256 next, final long generationMillis) {
+                int bits = next.leadingZeroBits();
+                if (bits == 0) {
+                    blocked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (bits == 2) {
+                    throw new IllegalStateException("listener bug");
+                }
+                received.add(bits);
+            }
+        });
+
+        dispatcher.publish(listener -> listener.onDifficultyAdjusted(Hash256.MAX, Hash256.MAX, 3));
+        blocked.await();
+        for (int next = 1; next <= 4; next++) {
+            Hash256 value = Hash256.withLeadingZeros(next);
+            dispatcher.publish(listener -> listener.onDifficultyAdjusted(Hash256.MAX, value, 3));
+        }
+        assertEquals(1, dispatcher.getDroppedEvents(), "Only three events fit while the listener is busy.");
+
+        release.countDown();
+        dispatcher.close();
+        dispatcher.close();
+        assertEquals(List.of(0, 1, 3), received, "The failure for 2 must not stop delivery of 3.");
+        assertEquals(1, dispatcher.getFailedDeliveries(), "The listener failure is counted, not printed.");
+    }
+
+    @Test
+    @DisplayName("The console listener prints the familiar messages")
+    void testConsoleListener() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ConsoleListener console = new ConsoleListener(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        Transaction tx = new Transaction("Alice", "Bob", 5, 1, null, null);
+
+        console.onBlockAccepted(new Block(1, 0L, Hash256.ZERO, Hash256.ZERO, 1, 2, List.of(), "Alice"));
+        console.onTransactionRejected(tx, AdmissionResult.INVALID_SIGNATURE);
+        console.onTransactionRejected(tx, AdmissionResult.INSUFFICIENT_FUNDS);
+        console.onTransactionRejected(tx, AdmissionResult.DUPLICATE);
+        console.onTransactionRejected(tx, AdmissionResult.ACCEPTED);
+        console.onDifficultyAdjusted(Hash256.MAX, Hash256.withLeadingZeros(4), 0);
+        console.onDifficultyAdjusted(Hash256.withLeadingZeros(4), Hash256.withLeadingZeros(1), 6000);
+        console.onDifficultyAdjusted(Hash256.MAX, Hash256.MAX, 1000);
+        console.onSnapshotFailed(4, new IOException("disk full"));
+
+        String out = bytes.toString(StandardCharsets.UTF_8);
+        assertTrue(out.contains("Created by: Alice"));
+        assertTrue(out.contains("Rejected invalid signature"));
+        assertTrue(out.contains("(insufficient funds)"));
+        assertTrue(out.contains("Rejected duplicate"));
+        assertTrue(out.contains("Block was generating for 0.002 seconds"), "Generation time is kept in milliseconds.");
+        assertTrue(out.contains("N was increased to 4.00 bits"));
+        assertTrue(out.contains("N was decreased to 1.00 bits"));
+        assertTrue(out.contains("N stays the same (0.00 bits)"));
+        assertTrue(out.contains("Could not write the ledger snapshot at height 4: disk full"));
+    }
+}
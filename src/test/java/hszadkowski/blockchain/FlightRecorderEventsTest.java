@@ -0,0 +1,60 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTest {
+
+    @Test
+    @DisplayName("Mining, block validation and transaction admission show up in a flight recording")
+    void testEventsAreRecorded(@TempDir final Path dir) throws Exception {
+        Blockchain blockchain = new Blockchain(1, Executors.newSingleThreadExecutor());
+        Client alice = new Client("Alice");
+        Path file = dir.resolve("blockchain.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(MiningTemplateEvent.class).withoutThreshold();
+            recording.enable(BlockValidationEvent.class).withoutThreshold();
+            recording.enable(TransactionAdmissionEvent.class).withoutThreshold();
+            recording.start();
+
+            blockchain.addTransaction(alice.createTransaction("Alice", "Bob", 500));
+            blockchain.addTransaction(alice.createTransaction("Alice", "Bob", 5));
+            new Miner(blockchain, alice).run();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        List<RecordedEvent> admissions = ofType(events, "hszadkowski.blockchain.TransactionAdmission");
+        assertEquals(List.of("INSUFFICIENT_FUNDS", "ACCEPTED"),
+                admissions.stream().map(e -> e.getString("result")).toList());
+        assertTrue(admissions.get(1).getLong("verifyNanos") > 0, "Verification time is recorded.");
+
+        RecordedEvent validation = ofType(events, "hszadkowski.blockchain.BlockValidation").get(0);
+        assertEquals(1, validation.getInt("blockId"));
+        assertEquals(2, validation.getInt("transactionCount"), "The award and the accepted payment.");
+        assertTrue(validation.getBoolean("accepted"));
+
+        RecordedEvent template = ofType(events, "hszadkowski.blockchain.MiningTemplate").get(0);
+        assertEquals(MiningTemplateEvent.SOLVED, template.getString("outcome"));
+        assertTrue(template.getLong("hashes") >= 1);
+    }
+
+    private static List<RecordedEvent> ofType(final List<RecordedEvent> events, final String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+    }
+}
@@ -0,0 +1,111 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+public class Hash256Test {
+
+    @Test
+    @DisplayName("Bytes, hex and buffers round-trip to the same hash")
+    void testRoundTrips() {
+        String hex = StringUtil.applySha256("block");
+        Hash256 hash = Hash256.fromHex(hex);
+        assertEquals(hex, hash.toString());
+        assertSame(hash.toString(), hash.toString(), "The hex form is rendered once.");
+        assertEquals(hash, Hash256.of(hash.toBytes()));
+        assertEquals(hash, Hash256.fromHex(hex.toUpperCase()), "Parsing ignores case.");
+
+        ByteBuffer buffer = ByteBuffer.allocate(Hash256.LENGTH + 1).put((byte) 7);
+        hash.writeTo(buffer);
+        buffer.flip().position(1);
+        assertEquals(hash, Hash256.read(buffer));
+        assertFalse(buffer.hasRemaining());
+        assertArrayEquals(new byte[Hash256.LENGTH], Hash256.ZERO.toBytes());
+    }
+
+    @Test
+    @DisplayName("Leading zeros are counted in bits across all four words")
+    void testLeadingZeroBits() {
+        assertEquals(256, Hash256.ZERO.leadingZeroBits());
+        assertEquals(0, TestHashes.hash("f").leadingZeroBits());
+        assertEquals(11, TestHashes.hash("001").leadingZeroBits());
+        assertEquals(64 + 7, TestHashes.hash("0".repeat(16) + "01").leadingZeroBits());
+        assertEquals(128 + 3, TestHashes.hash("0".repeat(32) + "1").leadingZeroBits());
+        assertEquals(192 + 63, TestHashes.hash("0".repeat(63) + "1").leadingZeroBits());
+
+        Hash256 hash = TestHashes.hash("0007");
+        assertTrue(hash.hasLeadingZeroNibbles(3));
+        assertFalse(hash.hasLeadingZeroNibbles(4));
+        assertTrue(Hash256.ZERO.hasLeadingZeroNibbles(64));
+        assertFalse(Hash256.ZERO.hasLeadingZeroNibbles(65), "More nibbles than a hash holds never match.");
+    }
+
+    @Test
+    @DisplayName("Targets compare as unsigned 256-bit numbers against hashes and raw digests")
+    void testTargets() {
+        assertEquals(Hash256.MAX, Hash256.withLeadingZeros(0));
+        assertEquals(Hash256.ZERO, Hash256.withLeadingZeros(256));
+        assertEquals(Hash256.fromHex("0" + "f".repeat(63)), Hash256.withLeadingZeros(4));
+        assertEquals(Hash256.fromHex("0".repeat(16) + "7" + "f".repeat(47)), Hash256.withLeadingZeros(65));
+        assertThrows(IllegalArgumentException.class, () -> Hash256.withLeadingZeros(-1));
+        assertThrows(IllegalArgumentException.class, () -> Hash256.withLeadingZeros(257));
+
+        Hash256 target = TestHashes.hash("00ab");
+        assertTrue(target.compareTo(TestHashes.hash("00ac")) < 0);
+        assertTrue(target.compareTo(TestHashes.hash("00aa")) > 0);
+        assertTrue(TestHashes.hash("8").compareTo(TestHashes.hash("7")) > 0, "The top bit is not a sign.");
+        assertEquals(0, target.compareTo(TestHashes.hash("00ab")));
+        for (int word = 0; word < 4; word++) {
+            char[] hex = target.toString().toCharArray();
+            hex[16 * word + 15] = '1';
+            Hash256 above = Hash256.fromHex(new String(hex));
+            assertTrue(target.compareTo(above) < 0, "Word " + word + " must be compared.");
+            assertTrue(above.compareTo(target) > 0);
+            assertFalse(target.isMetBy(above.toBytes()), "Word " + word + " must be compared on the digest.");
+            assertTrue(above.isMetBy(target.toBytes()));
+        }
+        assertTrue(target.isMetBy(target.toBytes()), "A digest equal to the target meets it.");
+        assertTrue(Hash256.MAX.isMetBy(Hash256.MAX.toBytes()));
+        assertFalse(Hash256.ZERO.isMetBy(TestHashes.hash("0".repeat(63) + "1").toBytes()));
+
+        Hash256 words = Hash256.fromHex("00000001" + "80000000" + "00000002" + "fffffffe"
+                + "00000003" + "00000000" + "00000000" + "00000004");
+        int[] expected = {1, 0x80000000, 2, 0xfffffffe, 3, 0, 0, 4};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], words.intWord(i), "Big-endian word " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Equality looks at every word")
+    void testEquality() {
+        Hash256 hash = TestHashes.hash("00ab");
+        assertEquals(hash, TestHashes.hash("00ab"));
+        assertEquals(hash.hashCode(), TestHashes.hash("00ab").hashCode());
+        for (int word = 0; word < 4; word++) {
+            char[] hex = hash.toString().toCharArray();
+            hex[16 * word + 15] = '1';
+            assertNotEquals(hash, Hash256.fromHex(new String(hex)), "A difference in word " + word + " must be seen.");
+        }
+        assertNotEquals(hash, "00ab");
+        assertNotEquals(hash, null);
+    }
+
+    @Test
+    @DisplayName("Malformed input is rejected")
+    void testRejectsMalformedInput() {
+        assertThrows(IllegalArgumentException.class, () -> Hash256.fromHex("0"));
+        assertThrows(IllegalArgumentException.class, () -> Hash256.fromHex("g".repeat(64)));
+        assertThrows(IllegalArgumentException.class, () -> Hash256.of(new byte[31]));
+    }
+}
@@ -0,0 +1,166 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class HashingEngineTest {
+
+    @Test
+    @DisplayName("tryNonce agrees with hashing the full header from scratch")
+    void testTryNonceMatchesFullHash() {
+        List<Transaction> txs = List.of(new Transaction("BLOCKCHAIN", "Miner1", 100),
+                new Transaction("Alice", "Bob", 5, 7, new byte[] {1, 2, 3}, null));
+        byte[] prefix = HashingEngine.headerPrefix(3, TestHashes.hash("00abc"), txs, 0L, 0L);
+        HashingEngine engine = HashingEngine.forCurrentThread();
+        engine.prepare(prefix);
+
+        for (int nonce = 0; nonce < 50; nonce++) {
+            boolean solved = engine.tryNonce(nonce, Hash256.withLeadingZeros(4));
+            String hex = engine.lastHashHex();
+            assertEquals(HashingEngine.hashHeader(prefix, nonce), engine.lastHash(), "Mismatch for nonce " + nonce);
+            assertEquals(engine.lastHash().toString(), hex);
+            assertEquals(hex.startsWith("0"), solved, "Target check must agree with the hex form.");
+        }
+        assertTrue(engine.tryNonce(0, HashingEngine.hashHeader(prefix, 0)), "A digest meets itself as a target.");
+        assertTrue(engine.tryNonce(0, Hash256.MAX));
+        assertFalse(engine.tryNonce(0, Hash256.ZERO));
+    }
+
+    @Test
+    @DisplayName("Header prefix commits to id, previous hash and transactions")
+    void testHeaderPrefixCommitsToFields() {
+        List<Transaction> txs = List.of(new Transaction("BLOCKCHAIN", "Miner1", 100));
+        Hash256 base = HashingEngine.hashHeader(HashingEngine.headerPrefix(1, Hash256.ZERO, txs, 0L, 0L), 0);
+
+        assertNotEquals(base, HashingEngine.hashHeader(HashingEngine.headerPrefix(2, Hash256.ZERO, txs, 0L, 0L), 0));
+        assertNotEquals(base, HashingEngine.hashHeader(HashingEngine.headerPrefix(1, TestHashes.hash("1"), txs, 0L, 0L), 0));
+        assertNotEquals(base, HashingEngine.hashHeader(HashingEngine.headerPrefix(1, Hash256.ZERO,
+                List.of(new Transaction("BLOCKCHAIN", "Miner2", 100)), 0L, 0L), 0));
+        assertNotEquals(base, HashingEngine.hashHeader(HashingEngine.headerPrefix(1, Hash256.ZERO, txs, 0L, 1L), 0),
+                "The extra nonce is part of the header.");
+        assertNotEquals(base, HashingEngine.hashHeader(HashingEngine.headerPrefix(1, Hash256.ZERO, txs, 1L, 0L), 0),
+                "The timestamp is part of the header.");
+        assertSame(HashingEngine.forCurrentThread(), HashingEngine.forCurrentThread(),
+                "Each thread reuses its own engine.");
+    }
+
+    @Test
+    @DisplayName("Header size does not depend on the number of transactions")
+    void testHeaderPrefixIsFixedSize() {
+        List<Transaction> one = List.of(new Transaction("BLOCKCHAIN", "Miner1", 100));
+        List<Transaction> many = new ArrayList<>(one);
+        for (int i = 0; i < 10_000; i++) {
+            many.add(new Transaction("Alice", "Bob", 1, i + 1, new byte[] {1}, null));
+        }
+        assertEquals(HashingEngine.headerPrefix(1, Hash256.ZERO, one, 0L, 0L).length,
+                HashingEngine.headerPrefix(1, Hash256.ZERO, many, 0L, 0L).length);
+    }
+
+    @Test
+    @DisplayName("A backend that is missing, or disagrees with Sha256, leaves hashing on the scalar path")
+    void testBackendLoading() {
+        String sequential = SequentialLanes.class.getName();
+        assertFalse(HashingEngine.probeVectorSupport("false", sequential));
+        assertTrue(HashingEngine.probeVectorSupport("true", sequential));
+        assertFalse(HashingEngine.probeVectorSupport("true", BrokenBackend.class.getName()));
+        assertEquals(HashingEngine.loadVectorBackend() != null,
+                HashingEngine.probeVectorSupport("true", HashingEngine.VECTOR_BACKEND));
+        assertEquals(HashingEngine.isVectorized(), HashingEngine.forCurrentThread().getLanes() > 1);
+        assertNull(HashingEngine.loadBackend("hszadkowski.blockchain.NoSuchBackend"));
+        assertNull(HashingEngine.loadBackend(Sha256.class.getName()), "No factory method to call.");
+
+        LaneHasher broken = HashingEngine.loadBackend(BrokenBackend.class.getName());
+        assertEquals(BrokenBackend.WIDTH, broken.width());
+        assertFalse(HashingEngine.agreesWithScalar(broken), "A wrong digest must be caught.");
+        assertTrue(HashingEngine.agreesWithScalar(new SequentialLanes()));
+    }
+
+    @Test
+    @DisplayName("Full batches go to the lane backend and partial ones to the scalar path")
+    void testLaneBackend() {
+        byte[] prefix = HashingEngine.headerPrefix(5, TestHashes.hash("0ab"),
+                List.of(new Transaction("BLOCKCHAIN", "Miner1", 100)), 0L, 0L);
+        HashingEngine lanes = new HashingEngine(new SequentialLanes());
+        HashingEngine scalar = new HashingEngine(null);
+        lanes.prepare(prefix);
+        scalar.prepare(prefix);
+        assertEquals(SequentialLanes.WIDTH, lanes.getLanes());
+        Hash256 target = Hash256.withLeadingZeros(3);
+        for (int first = 0; first < 40; first += 2) {
+            assertEquals(scalar.tryNonces(first, 2, target), lanes.tryNonces(first, 2, target));
+            assertEquals(scalar.lastHash(), lanes.lastHash());
+        }
+    }
+
+    /**
+     * A lane backend that hashes its nonces one after another.
+     */
+    static final class SequentialLanes implements LaneHasher {
+        static final int WIDTH = 2;
+
+        static LaneHasher createIfAccelerated() {
+            return new SequentialLanes();
+        }
+
+        private final Sha256 midstate = new Sha256();
+
+        @Override
+        public int width() {
+            return WIDTH;
+        }
+
+        @Override
+        public void prepare(final Sha256 state) {
+            midstate.copyFrom(state);
+        }
+
+        @Override
+        public int search(final int firstNonce, final Hash256 target, final byte[] digest) {
+            Sha256 work = new Sha256();
+            for (int lane = 0; lane < WIDTH; lane++) {
+                work.copyFrom(midstate);
+                work.updateInt(firstNonce + lane);
+                work.digest(digest);
+                if (target.isMetBy(digest)) {
+                    return lane;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Claims the first lane solves the easiest target and leaves the digest untouched.
+     */
+    static final class BrokenBackend implements LaneHasher {
+        static final int WIDTH = 4;
+
+        static LaneHasher createIfAccelerated() {
+            return new BrokenBackend();
+        }
+
+        @Override
+        public int width() {
+            return WIDTH;
+        }
+
+        @Override
+        public void prepare(final Sha256 midstate) {
+        }
+
+        @Override
+        public int search(final int firstNonce, final Hash256 target, final byte[] digest) {
+            return target.equals(Hash256.MAX) ? 0 : -1;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+public class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Percentiles are bucket upper bounds within a factor of two of the true value")
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99), "An empty histogram reports zero.");
+        assertEquals(0.0, histogram.getMean());
+
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+
+        assertEquals(1001, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500500.0 / 1001, histogram.getMean(), 1e-9);
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 500 && median < 1000, "Median bound was " + median);
+        assertEquals(1000, histogram.getPercentile(99), "Bounds are capped by the maximum.");
+        assertEquals(0, histogram.getPercentile(0), "The smallest record was the clamped negative one.");
+    }
+
+    @Test
+    @DisplayName("Concurrent recording loses no counts")
+    void testConcurrentRecording() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        IntStream.range(0, 100_000).parallel().forEach(histogram::record);
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(99_999, histogram.getMax());
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+}
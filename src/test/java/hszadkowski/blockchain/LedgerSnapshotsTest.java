@@ -0,0 +1,127 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+public class LedgerSnapshotsTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<Block> chain(final int length) {
+        List<Block> chain = new ArrayList<>();
+        for (int id = 1; id <= length; id++) {
+            chain.add(new Block(id, id, TestHashes.hash("e" + id), TestHashes.hash("f" + id), id, 1,
+                    List.of(new Transaction("BLOCKCHAIN", "miner", 100)), "miner"));
+        }
+        return chain;
+    }
+
+    private static Hash256 tip(final int height) {
+        return TestHashes.hash("f" + height);
+    }
+
+    @Test
+    @DisplayName("Snapshots round trip and only the newest ones are kept")
+    void testRoundTripAndPruning() throws Exception {
+        Map<String, Long> balances = Map.of("Alice", 270L, "Bob", 180L, "Zoë", 0L);
+        try (LedgerSnapshots snapshots = LedgerSnapshots.open(dir.resolve("data"), 2)) {
+            Path file = snapshots.writeAsync(2, tip(2), balances).join();
+            assertTrue(Files.exists(file));
+
+            LedgerSnapshots.Snapshot read = snapshots.read(2);
+            assertEquals(2, read.getHeight());
+            assertEquals(tip(2), read.getTipHash());
+            assertEquals(balances, read.getBalances());
+
+            snapshots.writeAsync(4, tip(4), Map.of("Alice", 1L));
+            snapshots.writeAsync(6, tip(6), Map.of("Alice", 2L)).join();
+            assertEquals(List.of(6, 4), snapshots.heights(), "Only the newest snapshots are kept.");
+            assertEquals(Map.of("Alice", 2L), snapshots.loadNewest(chain(6)).getBalances());
+        }
+    }
+
+    @Test
+    @DisplayName("Damaged snapshots and those from another chain are passed over")
+    void testSkipsUnusableSnapshots() throws Exception {
+        try (LedgerSnapshots snapshots = LedgerSnapshots.open(dir, 2)) {
+            assertNull(snapshots.loadNewest(chain(6)), "There is nothing to load yet.");
+            snapshots.writeAsync(2, tip(2), Map.of("Alice", 1L));
+            snapshots.writeAsync(4, tip(4), Map.of("Alice", 2L)).join();
+            Files.createFile(dir.resolve("ledger-abc.snap"));
+            Files.createFile(dir.resolve("ledger-0000000000.snap"));
+            Files.createFile(dir.resolve("ledger-9999999999.snap"));
+            Files.createFile(dir.resolve("ledger-12.snap"));
+
+            assertEquals(4, snapshots.loadNewest(chain(6)).getHeight());
+            assertEquals(2, snapshots.loadNewest(chain(3)).getHeight(), "The chain is shorter than the newest.");
+
+            List<Block> fork = chain(6);
+            fork.set(3, chain(7).get(6));
+            assertEquals(2, snapshots.loadNewest(fork).getHeight(), "Height 4 was taken on another chain.");
+
+            Path newest = dir.resolve("ledger-0000000004.snap");
+            byte[] bytes = Files.readAllBytes(newest);
+            bytes[bytes.length / 2] ^= 1;
+            Files.write(newest, bytes);
+            assertNull(snapshots.read(4), "The checksum no longer matches.");
+            assertEquals(2, snapshots.loadNewest(chain(6)).getHeight());
+
+            Files.write(newest, new byte[] {1, 2, 3});
+            assertNull(snapshots.read(4), "The snapshot was cut short.");
+        }
+    }
+
+    @Test
+    @DisplayName("The interval decides when a snapshot is due and can be configured")
+    void testInterval() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> LedgerSnapshots.open(dir, 0));
+        try (LedgerSnapshots snapshots = LedgerSnapshots.open(dir, 3)) {
+            assertTrue(snapshots.isDue(6));
+            assertFalse(snapshots.isDue(7));
+        }
+
+        String previous = System.getProperty(LedgerSnapshots.INTERVAL_PROPERTY);
+        try {
+            System.setProperty(LedgerSnapshots.INTERVAL_PROPERTY, "50");
+            try (LedgerSnapshots snapshots = LedgerSnapshots.open(dir)) {
+                assertEquals(50, snapshots.getInterval());
+            }
+            System.clearProperty(LedgerSnapshots.INTERVAL_PROPERTY);
+            try (LedgerSnapshots snapshots = LedgerSnapshots.open(dir)) {
+                assertEquals(LedgerSnapshots.DEFAULT_INTERVAL, snapshots.getInterval());
+            }
+        } finally {
+            if (previous != null) {
+                System.setProperty(LedgerSnapshots.INTERVAL_PROPERTY, previous);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A failed write completes exceptionally instead of reaching the chain")
+    void testWriteFailure() throws Exception {
+        Path data = dir.resolve("data");
+        try (LedgerSnapshots snapshots = LedgerSnapshots.open(data, 1)) {
+            Files.delete(data);
+            CompletionException thrown = assertThrows(CompletionException.class,
+                    () -> snapshots.writeAsync(1, tip(1), Map.of()).join());
+            assertTrue(thrown.getCause() instanceof IOException);
+        }
+    }
+}
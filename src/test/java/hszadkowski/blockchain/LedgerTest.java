@@ -0,0 +1,89 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LedgerTest {
+
+    private Ledger ledger;
+    private List<Block> blocks;
+
+    private Block block(final int id, final Transaction... txs) {
+        return new Block(id, 0L, Hash256.ZERO, Hash256.ZERO, 0, 2, List.of(txs), "Miner");
+    }
+
+    @BeforeEach
+    void setUp() {
+        ledger = new Ledger();
+        blocks = new ArrayList<>();
+        blocks.add(block(1, new Transaction("BLOCKCHAIN", "Alice", 100)));
+        blocks.add(block(2, new Transaction("BLOCKCHAIN", "Bob", 100),
+                new Transaction("Alice", "Bob", 30, 1, null, null)));
+        blocks.add(block(3, new Transaction("BLOCKCHAIN", "Alice", 100),
+                new Transaction("Bob", "Carl", 50, 2, null, null)));
+        blocks.forEach(ledger::apply);
+    }
+
+    @Test
+    @DisplayName("Current balances reflect every applied block")
+    void testCurrentBalances() {
+        assertEquals(3, ledger.getHeight(), "Three blocks were applied.");
+        assertEquals(270, ledger.getBalance("Alice"), "100 start + 200 awards - 30 sent.");
+        assertEquals(180, ledger.getBalance("Bob"), "100 start + 100 award + 30 received - 50 sent.");
+        assertEquals(150, ledger.getBalance("Carl"), "100 start + 50 received.");
+        assertEquals(100, ledger.getBalance("Dave"), "Unknown accounts start with 100.");
+        assertEquals(Long.MAX_VALUE, ledger.getBalance("BLOCKCHAIN"), "The award sender is unlimited.");
+    }
+
+    @Test
+    @DisplayName("Historical balances are answered per height")
+    void testBalanceAtHeight() {
+        assertEquals(100, ledger.getBalanceAt("Alice", 0), "Before genesis everyone has the initial balance.");
+        assertEquals(200, ledger.getBalanceAt("Alice", 1));
+        assertEquals(170, ledger.getBalanceAt("Alice", 2));
+        assertEquals(270, ledger.getBalanceAt("Alice", 3));
+        assertEquals(270, ledger.getBalanceAt("Alice", 10), "Heights above the tip return the latest balance.");
+        assertEquals(100, ledger.getBalanceAt("Carl", 2), "Carl was untouched until height 3.");
+        assertEquals(150, ledger.getBalanceAt("Carl", 3));
+        assertThrows(IllegalArgumentException.class, () -> ledger.getBalanceAt("Alice", -1));
+    }
+
+    @Test
+    @DisplayName("Incremental state matches a full rescan")
+    void testConsistency() {
+        assertTrue(ledger.isConsistentWith(blocks), "Ledger should agree with a full rescan.");
+
+        blocks.add(block(4, new Transaction("Carl", "Alice", 10, 3, null, null)));
+        assertFalse(ledger.isConsistentWith(blocks), "A block missing from the ledger must be detected.");
+
+        ledger.apply(blocks.get(3));
+        assertTrue(ledger.isConsistentWith(blocks), "Ledger should agree again after applying the block.");
+    }
+
+    @Test
+    @DisplayName("A ledger loaded from balances continues from their height")
+    void testLoadFromBalances() {
+        Ledger early = new Ledger();
+        blocks.subList(0, 2).forEach(early::apply);
+        Ledger loaded = new Ledger();
+        loaded.load(2, early.balances());
+        assertEquals(2, loaded.getHeight());
+        assertEquals(170, loaded.getBalanceAt("Alice", 2));
+        assertThrows(IllegalArgumentException.class, () -> loaded.getBalanceAt("Alice", 1),
+                "No history is kept below the loaded height.");
+
+        loaded.apply(blocks.get(2));
+        assertEquals(ledger.balances(), loaded.balances());
+        assertEquals(150, loaded.getBalanceAt("Carl", 3));
+        assertTrue(loaded.isConsistentWith(blocks), "A loaded ledger still agrees with a full rescan.");
+    }
+}
@@ -0,0 +1,124 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+public class LightVerifierTest {
+    private static final long INTERVAL = 1_000L;
+
+    private static List<Transaction> transactions(final int count, final long firstId) {
+        List<Transaction> txs = new ArrayList<>();
+        txs.add(new Transaction("BLOCKCHAIN", "miner", 100));
+        for (int i = 1; i < count; i++) {
+            txs.add(new Transaction("Alice", "Bob", i, firstId + i, new byte[] {(byte) i}, null));
+        }
+        return txs;
+    }
+
+    private static BlockHeader header(final int id, final Hash256 previousHash, final List<Transaction> txs) {
+        return TestBlocks.mine(id, previousHash, Hash256.MAX, id * INTERVAL, INTERVAL, txs).getHeader();
+    }
+
+    private static InclusionProof proof(final BlockHeader header, final List<Transaction> txs, final int index) {
+        return new InclusionProof(header, txs.get(index), index, MerkleTree.of(txs).path(index));
+    }
+
+    @Test
+    @DisplayName("Every transaction of every block can be proven against the header chain")
+    void testProofsForAllPositions() {
+        LightVerifier light = new LightVerifier(INTERVAL);
+        List<Transaction> first = transactions(7, 0);
+        List<Transaction> second = transactions(1, 100);
+        BlockHeader h1 = header(1, Hash256.ZERO, first);
+        BlockHeader h2 = header(2, h1.getHash(), second);
+        assertTrue(light.addHeader(h1));
+        assertTrue(light.addHeader(h2));
+        assertEquals(2, light.getHeight());
+
+        for (int i = 0; i < first.size(); i++) {
+            assertTrue(light.verify(proof(h1, first, i)), "Proof failed for position " + i);
+        }
+        assertTrue(light.verify(proof(h2, second, 0)), "A single-transaction block has an empty path.");
+    }
+
+    @Test
+    @DisplayName("Headers that do not recompute or do not link up are refused")
+    void testRejectsBadHeaders() {
+        LightVerifier light = new LightVerifier(INTERVAL);
+        List<Transaction> txs = transactions(3, 0);
+        BlockHeader good = header(1, Hash256.ZERO, txs);
+
+        assertFalse(light.addHeader(header(2, Hash256.ZERO, txs)), "Ids must continue the chain.");
+        assertFalse(light.addHeader(header(1, TestHashes.hash("1"), txs)), "The first header must link to genesis.");
+        assertFalse(light.addHeader(new BlockHeader(1, Hash256.ZERO, good.getMerkleRoot(), good.getTimestamp(), 0L,
+                good.getNonce() + 1, good.getHash())),
+                "The hash must match the header fields.");
+        assertTrue(light.addHeader(good));
+        assertEquals(1, light.getHeight());
+
+        assertFalse(light.addHeader(TestBlocks.mine(2, good.getHash(), Hash256.MAX, good.getTimestamp() - 1, INTERVAL,
+                txs).getHeader()), "A header may not precede its parent.");
+        assertFalse(light.addHeader(TestBlocks.mine(2, good.getHash(), Hash256.MAX,
+                System.currentTimeMillis() + 2 * ChainState.MAX_FUTURE_MILLIS, INTERVAL, txs).getHeader()),
+                "Nor run far ahead of the clock.");
+        assertEquals(1, light.getHeight());
+    }
+
+    @Test
+    @DisplayName("Headers must meet the target replayed from their timestamps, as on the full node")
+    void testProofOfWork() {
+        Blockchain chain = new Blockchain(20, Executors.newSingleThreadExecutor(), 10, INTERVAL);
+        LightVerifier light = new LightVerifier(INTERVAL);
+        long[] blockMillis = {INTERVAL, 0, 10, 3 * INTERVAL, 0};
+        for (int i = 0; i < 2 * Retargeter.DEFAULT_WINDOW; i++) {
+            chain.addBlock(TestBlocks.next(chain, blockMillis[i % blockMillis.length], transactions(1, 0)));
+            assertTrue(light.addHeader(chain.getHeader(chain.getNextBlockId() - 1)));
+            assertEquals(chain.getTarget(), light.getTarget(), "Both sides replay the same targets.");
+        }
+        assertTrue(light.getTarget().compareTo(Hash256.MAX) < 0, "Fast blocks lowered the target.");
+
+        BlockHeader tip = chain.getHeader(chain.getNextBlockId() - 1);
+        BlockHeader easy = header(tip.getId() + 1, tip.getHash(), transactions(2, 0));
+        int nonce = 0;
+        while (easy.getHash().compareTo(light.getTarget()) <= 0) {
+            nonce++;
+            easy = TestBlocks.mine(tip.getId() + 1, tip.getHash(), Hash256.MAX, tip.getTimestamp() + nonce,
+                    INTERVAL, transactions(2, 0)).getHeader();
+        }
+        assertFalse(light.addHeader(easy), "A hash above the target is no proof of work.");
+    }
+
+    @Test
+    @DisplayName("Tampered or unanchored proofs are refused")
+    void testRejectsBadProofs() {
+        LightVerifier light = new LightVerifier(INTERVAL);
+        List<Transaction> txs = transactions(4, 0);
+        BlockHeader header = header(1, Hash256.ZERO, txs);
+        light.addHeader(header);
+
+        InclusionProof good = proof(header, txs, 2);
+        Transaction forged = new Transaction("Alice", "Bob", 500, 2, new byte[] {2}, null);
+        assertFalse(light.verify(new InclusionProof(header, forged, 2, good.getPath())),
+                "A changed transaction must not verify.");
+        assertFalse(light.verify(new InclusionProof(header, txs.get(2), 3, good.getPath())),
+                "The index decides left and right along the path.");
+
+        List<Transaction> other = transactions(4, 50);
+        BlockHeader unknown = header(1, Hash256.ZERO, other);
+        assertFalse(light.verify(proof(unknown, other, 1)), "The header must be one the verifier holds.");
+        assertFalse(light.verify(proof(header(2, header.getHash(), other), other, 1)),
+                "Proofs above the known height cannot be checked.");
+        assertThrows(IllegalArgumentException.class, () -> MerkleTree.of(txs).path(4));
+        assertFalse(light.verify(new InclusionProof(header, txs.get(2), 2 + 4, good.getPath())),
+                "An index beyond the path's depth must not alias a real one.");
+    }
+}
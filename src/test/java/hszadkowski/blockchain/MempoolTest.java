@@ -0,0 +1,96 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class MempoolTest {
+
+    private Mempool mempool;
+    private Transaction aliceToBob;
+    private Transaction aliceToCarl;
+    private Transaction bobToAlice;
+
+    @BeforeEach
+    void setUp() {
+        mempool = new Mempool(2);
+        aliceToBob = new Transaction("Alice", "Bob", 10, 1, null, null);
+        aliceToCarl = new Transaction("Alice", "Carl", 20, 2, null, null);
+        bobToAlice = new Transaction("Bob", "Alice", 5, 3, null, null);
+        mempool.add(aliceToBob);
+        mempool.add(aliceToCarl);
+        mempool.add(bobToAlice);
+    }
+
+    @Test
+    @DisplayName("Transactions are indexed by id and by sender")
+    void testIndexes() {
+        assertEquals(3, mempool.size());
+        assertTrue(mempool.contains(2));
+        assertFalse(mempool.contains(4));
+        assertEquals(2, mempool.getBySender("Alice").size(), "Alice has two pending transactions.");
+        assertEquals(30, mempool.getPendingSpend("Alice"), "Alice committed 10 + 20 VC.");
+        assertEquals(0, mempool.getPendingSpend("Carl"), "Carl has nothing pending.");
+        assertTrue(mempool.getBySender("Carl").isEmpty());
+    }
+
+    @Test
+    @DisplayName("A second transaction with the same id is rejected")
+    void testDuplicateIdRejected() {
+        assertFalse(mempool.add(new Transaction("Eve", "Mallory", 1, 1, null, null)));
+        assertEquals(3, mempool.size());
+        assertEquals(0, mempool.getPendingSpend("Eve"));
+    }
+
+    @Test
+    @DisplayName("Block templates are bounded and follow arrival order")
+    void testSelectForBlock() {
+        assertEquals(List.of(aliceToBob, aliceToCarl), mempool.selectForBlock(),
+                "Only the two oldest transactions fit into a block.");
+        assertEquals(2, mempool.getMaxBlockTransactions());
+        assertThrows(IllegalArgumentException.class, () -> new Mempool(0));
+    }
+
+    @Test
+    @DisplayName("Confirmed transactions are evicted from every index")
+    void testRemoveAll() {
+        Transaction award = new Transaction("BLOCKCHAIN", "Miner", 100);
+        Transaction sameIdOtherTx = new Transaction("Bob", "Alice", 5, 3, null, null);
+        mempool.removeAll(List.of(award, aliceToBob, bobToAlice, sameIdOtherTx));
+
+        assertEquals(1, mempool.size());
+        assertFalse(mempool.contains(1));
+        assertEquals(20, mempool.getPendingSpend("Alice"));
+        assertEquals(0, mempool.getPendingSpend("Bob"));
+        assertTrue(mempool.getBySender("Bob").isEmpty());
+        assertEquals(List.of(aliceToCarl), mempool.selectForBlock());
+        assertEquals(BlockCodec.encodedSize(aliceToCarl), mempool.getBytes(), "Only the remaining bytes count.");
+        assertEquals(2, mempool.getResidenceTimes().getCount(), "Each confirmed transaction records its wait.");
+    }
+
+    @Test
+    @DisplayName("An equal copy confirmed in a block evicts the pending original")
+    void testRemoveAllByIdAndUnaffordable() {
+        Transaction copy = new Transaction("Alice", "Bob", 10, 1, null, null);
+        mempool.removeAll(List.of(copy));
+        assertFalse(mempool.contains(1), "The id alone decides.");
+        assertEquals(20, mempool.getPendingSpend("Alice"));
+
+        Transaction aliceToDave = new Transaction("Alice", "Dave", 5, 4, null, null);
+        mempool.add(aliceToDave);
+        assertEquals(List.of(), mempool.removeUnaffordable(aliceToBob.getFromId(), 25));
+        assertEquals(List.of(aliceToCarl), mempool.removeUnaffordable(aliceToBob.getFromId(), 19),
+                "Older transactions are kept while they fit, the rest is evicted.");
+        assertEquals(5, mempool.getPendingSpend("Alice"));
+        assertEquals(2, mempool.size());
+        assertEquals(List.of(), mempool.removeUnaffordable(AccountRegistry.shared().idOf("Carl"), 0),
+                "Nothing pending, nothing to evict.");
+    }
+}
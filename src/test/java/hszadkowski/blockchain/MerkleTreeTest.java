@@ -0,0 +1,139 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MerkleTreeTest {
+
+    private static List<Transaction> transactions(final int count) {
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            txs.add(new Transaction("Alice", "Bob", i, i + 1, new byte[] {(byte) i}, null));
+        }
+        return txs;
+    }
+
+    /**
+     * Straightforward level-by-level construction the incremental tree must agree with.
+     */
+    private static byte[] referenceRoot(final List<Transaction> txs) {
+        Sha256 sha = new Sha256();
+        List<byte[]> level = new ArrayList<>();
+        for (Transaction tx : txs) {
+            sha.update(new byte[] {MerkleTree.LEAF_PREFIX});
+            sha.update(MerkleTree.leafEncoding(tx));
+            level.add(sha.digest());
+        }
+        while (level.size() > 1) {
+            List<byte[]> next = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += 2) {
+                byte[] left = level.get(i);
+                byte[] right = i + 1 < level.size() ? level.get(i + 1) : left;
+                next.add(MerkleTree.hashNode(sha, left, right));
+            }
+            level = next;
+        }
+        return level.get(0);
+    }
+
+    @Test
+    @DisplayName("Appending one transaction at a time yields the same root as a full rebuild")
+    void testIncrementalMatchesRebuild() {
+        List<Transaction> txs = transactions(33);
+        MerkleTree tree = new MerkleTree();
+        for (int i = 0; i < txs.size(); i++) {
+            tree.append(txs.get(i));
+            assertArrayEquals(referenceRoot(txs.subList(0, i + 1)), tree.getRoot(),
+                    "Root mismatch after " + (i + 1) + " transactions");
+        }
+        assertEquals(33, tree.size());
+        assertArrayEquals(tree.getRoot(), MerkleTree.of(txs).getRoot());
+    }
+
+    @Test
+    @DisplayName("The root commits to every transaction and to their order")
+    void testRootCommitsToTransactions() {
+        List<Transaction> txs = transactions(5);
+        byte[] root = MerkleTree.of(txs).getRoot();
+
+        List<Transaction> swapped = new ArrayList<>(txs);
+        swapped.set(1, txs.get(2));
+        swapped.set(2, txs.get(1));
+        assertFalse(Arrays.equals(root, MerkleTree.of(swapped).getRoot()), "Order must matter.");
+
+        List<Transaction> changed = new ArrayList<>(txs);
+        changed.set(4, new Transaction("Alice", "Bob", 999, 5, new byte[] {4}, null));
+        assertFalse(Arrays.equals(root, MerkleTree.of(changed).getRoot()), "Amounts must matter.");
+
+        assertTrue(Arrays.equals(new byte[Sha256.DIGEST_LENGTH], new MerkleTree().getRoot()),
+                "An empty tree has an all-zero root.");
+    }
+
+    @Test
+    @DisplayName("Paths verify at every real leaf, but not at a padded position past the last one")
+    void testPathsStopAtLastLeaf() {
+        // Where padding pairs the last leaf's subtree with itself, its path also climbs to the root from there
+        int[][] padded = {{3, 3}, {5, 5}, {5, 6}, {6, 7}};
+        for (int[] fake : padded) {
+            List<Transaction> txs = transactions(fake[0]);
+            MerkleTree tree = MerkleTree.of(txs);
+            for (int i = 0; i < txs.size(); i++) {
+                assertArrayEquals(tree.getRoot(), MerkleTree.rootFromPath(txs.get(i), i, tree.path(i)));
+            }
+            Transaction last = txs.get(txs.size() - 1);
+            assertNull(MerkleTree.rootFromPath(last, fake[1], tree.path(txs.size() - 1)),
+                    "Index " + fake[1] + " lies past the last of " + fake[0] + " leaves.");
+        }
+        List<Transaction> txs = transactions(4);
+        assertNull(MerkleTree.rootFromPath(txs.get(1), 1 + 4, MerkleTree.of(txs).path(1)),
+                "An index deeper than the path must not alias a real one.");
+        assertNull(MerkleTree.rootFromPath(txs.get(1), -1, MerkleTree.of(txs).path(1)));
+    }
+
+    @Test
+    @DisplayName("Leaves hash a fixed transaction layout, independent of the storage format")
+    void testLeafEncoding() {
+        Transaction tx = new Transaction("Al", "Bo", 5, 9, new byte[] {7}, null);
+        ByteBuffer expected = ByteBuffer.allocate(30);
+        expected.putLong(9).putShort((short) 2).put((byte) 'A').put((byte) 'l').putShort((short) 2)
+                .put((byte) 'B').put((byte) 'o').putLong(5).put(tx.getScheme().getId())
+                .putShort((short) 1).put((byte) 7).putShort((short) 0xFFFF);
+        assertArrayEquals(expected.array(), MerkleTree.leafEncoding(tx));
+    }
+
+    @Test
+    @DisplayName("A block header carries the Merkle root and reproduces the block hash")
+    void testBlockHeader() {
+        List<Transaction> txs = transactions(3);
+        byte[] root = MerkleTree.of(txs).getRoot();
+        Hash256 hash = HashingEngine.hashHeader(BlockHeader.prefix(2, TestHashes.hash("00ab"), root, 0L, 7L), 11);
+        BlockHeader header = new BlockHeader(2, TestHashes.hash("00ab"), root, 0L, 7L, 11, hash);
+        Block block = new Block(header, 1, txs, "miner");
+
+        assertSame(header, block.getHeader());
+        assertTrue(block.commitsToTransactions());
+        assertFalse(new Block(header, 1, transactions(2), "miner").commitsToTransactions(),
+                "A header does not vouch for transactions outside its tree.");
+        assertArrayEquals(root, block.getMerkleRoot());
+        assertArrayEquals(root, header.getMerkleRoot());
+        assertTrue(header.hasMerkleRoot(root));
+        assertEquals(2, header.getId());
+        assertEquals(TestHashes.hash("00ab"), header.getPreviousHash());
+        assertEquals(7L, header.getExtraNonce());
+        assertEquals(11, header.getNonce());
+        assertEquals(hash, header.getHash());
+        assertEquals(hash, header.computeHash(), "The header alone must be enough to check the hash.");
+    }
+}
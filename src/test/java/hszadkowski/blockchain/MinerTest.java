@@ -1,13 +1,18 @@
 package hszadkowski.blockchain;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MinerTest {
 
@@ -17,8 +22,8 @@ public class MinerTest {
 
         Blockchain blockchain = mock(Blockchain.class);
         when(blockchain.getNextBlockId()).thenReturn(1);
-        when(blockchain.getLastHash()).thenReturn("0000000000abcdef");
-        when(blockchain.getDifficulty()).thenReturn(1);
+        when(blockchain.getLastHash()).thenReturn(TestHashes.hash("0000000000abcdef"));
+        when(blockchain.getTarget()).thenReturn(Hash256.withLeadingZeros(0));
         when(blockchain.hasReachedTarget())
                 .thenReturn(false, false, false, false, false, true);
         when(blockchain.collectTransactionsForNewBlock("Miner1"))
@@ -27,9 +32,6 @@ public class MinerTest {
         Client minerClient = mock(Client.class);
         when(minerClient.getName()).thenReturn("Miner1");
 
-        mockStatic(StringUtil.class);
-        when(StringUtil.applySha256(anyString())).thenReturn("0validhash");
-
         Miner miner = new Miner(blockchain, minerClient);
         miner.run();
 
@@ -42,8 +44,8 @@ public class MinerTest {
     void testMinerStopsWhenInterrupted() throws Exception {
         Blockchain blockchain = mock(Blockchain.class);
         when(blockchain.getNextBlockId()).thenReturn(1);
-        when(blockchain.getLastHash()).thenReturn("0000000000abcdef");
-        when(blockchain.getDifficulty()).thenReturn(4);
+        when(blockchain.getLastHash()).thenReturn(TestHashes.hash("0000000000abcdef"));
+        when(blockchain.getTarget()).thenReturn(Hash256.withLeadingZeros(16));
         when(blockchain.hasReachedTarget()).thenReturn(false);
 
         Client minerClient = mock(Client.class);
@@ -81,36 +83,124 @@ public class MinerTest {
         executor.shutdownNow();
     }
 
+    @Test
+    @DisplayName("Miner gives up without a proof-of-work target")
+    void testMinerFailsWithoutTarget() {
+        Blockchain blockchain = mock(Blockchain.class);
+        when(blockchain.getNextBlockId()).thenReturn(1);
+        when(blockchain.getLastHash()).thenReturn(Hash256.ZERO);
+        when(blockchain.getTarget()).thenReturn(null);
+
+        Client minerClient = mock(Client.class);
+        when(minerClient.getName()).thenReturn("Miner1");
+
+        new Miner(blockchain, minerClient).run();
+
+        verify(blockchain, never()).addBlock(any(Block.class));
+    }
+
     @Test
     @DisplayName("Miner computes valid hash in the do-while loop")
     void testMinerComputesValidHash() {
+        List<Transaction> txs = List.of(new Transaction("BLOCKCHAIN", "Miner1", 100));
         Blockchain blockchain = mock(Blockchain.class);
         when(blockchain.getNextBlockId()).thenReturn(1);
-        when(blockchain.getLastHash()).thenReturn("0000000000abcdef");
-        when(blockchain.getDifficulty()).thenReturn(4);
-        when(blockchain.hasReachedTarget())
-                .thenReturn(false, false, false, false, true);
-        when(blockchain.collectTransactionsForNewBlock("Miner1"))
-                .thenReturn(List.of(new Transaction("BLOCKCHAIN", "Miner1", 100)));
+        when(blockchain.getLastHash()).thenReturn(TestHashes.hash("0000000000abcdef"));
+        when(blockchain.getTarget()).thenReturn(Hash256.withLeadingZeros(12));
+        when(blockchain.collectTransactionsForNewBlock("Miner1")).thenReturn(txs);
+
+        AtomicBoolean added = new AtomicBoolean(false);
+        when(blockchain.hasReachedTarget()).thenAnswer(invocation -> added.get());
+        doAnswer(invocation -> {
+            added.set(true);
+            return null;
+        }).when(blockchain).addBlock(any(Block.class));
 
         Client minerClient = mock(Client.class);
         when(minerClient.getName()).thenReturn("Miner1");
 
-        try (var mockedStatic = mockStatic(StringUtil.class)) {
-            mockedStatic.when(() -> StringUtil.applySha256(anyString()))
-                    .thenReturn("1111invalidhash",
-                            "0000validhash");
+        Miner miner = new Miner(blockchain, minerClient);
+        miner.run();
+
+        ArgumentCaptor<Block> captor = ArgumentCaptor.forClass(Block.class);
+        verify(blockchain, times(1)).getNextBlockId();
+        verify(blockchain, times(1)).getLastHash();
+        verify(blockchain, times(1)).addBlock(captor.capture());
 
-            Miner miner = new Miner(blockchain, minerClient);
-            miner.run();
+        Block mined = captor.getValue();
+        assertTrue(mined.getHash().toString().startsWith("000"), "Mined hash should satisfy the difficulty.");
+        assertEquals(HashingEngine.hashHeader(HashingEngine.headerPrefix(1, TestHashes.hash("0000000000abcdef"), txs,
+                mined.getTimestamp(), mined.getExtraNonce()), mined.getMagicNumber()), mined.getHash(), "Hash should commit to the header and nonce.");
+    }
 
-            verify(blockchain, times(2)).getNextBlockId();
-            verify(blockchain, times(2)).getLastHash();
-            verify(blockchain, times(5)).hasReachedTarget();
-            verify(blockchain, times(1)).addBlock(any(Block.class));
+    @Test
+    @DisplayName("Miner claims new ranges and re-prepares the header when the extra nonce rolls over")
+    void testMinerRollsOverExhaustedRanges() {
+        List<Transaction> txs = List.of(new Transaction("BLOCKCHAIN", "Miner1", 100));
+        Blockchain blockchain = mock(Blockchain.class);
+        when(blockchain.getNextBlockId()).thenReturn(4);
+        when(blockchain.getLastHash()).thenReturn(TestHashes.hash("00ff"));
+        when(blockchain.getTarget()).thenReturn(Hash256.withLeadingZeros(8));
+        when(blockchain.collectTransactionsForNewBlock("Miner1")).thenReturn(txs);
+
+        AtomicBoolean added = new AtomicBoolean(false);
+        when(blockchain.hasReachedTarget()).thenAnswer(invocation -> added.get());
+        doAnswer(invocation -> {
+            added.set(true);
+            return null;
+        }).when(blockchain).addBlock(any(Block.class));
+
+        AtomicLong claims = new AtomicLong();
+        WorkCoordinator coordinator = mock(WorkCoordinator.class);
+        when(coordinator.claim(4, TestHashes.hash("00ff"))).thenAnswer(invocation -> {
+            long n = claims.getAndIncrement();
+            return new WorkCoordinator.NonceRange(n / 4, n % 4 * 16, n % 4 * 16 + 16);
+        });
 
-            mockedStatic.verify(() -> StringUtil.applySha256(anyString()), times(3));
-        }
+        Client minerClient = mock(Client.class);
+        when(minerClient.getName()).thenReturn("Miner1");
+
+        new Miner(blockchain, minerClient, coordinator).run();
+
+        ArgumentCaptor<Block> captor = ArgumentCaptor.forClass(Block.class);
+        verify(blockchain, times(1)).addBlock(captor.capture());
+        Block mined = captor.getValue();
+        assertTrue(mined.getHash().toString().startsWith("00"), "Mined hash should satisfy the difficulty.");
+        assertEquals(HashingEngine.hashHeader(HashingEngine.headerPrefix(4, TestHashes.hash("00ff"), txs,
+                mined.getTimestamp(), mined.getExtraNonce()), mined.getMagicNumber()), mined.getHash(),
+                "Hash should commit to the extra nonce the winning range belonged to.");
     }
 
+    @Test
+    @DisplayName("Miner abandons its template as soon as the tip version changes")
+    void testMinerAbandonsStaleTemplate() {
+        List<Transaction> txs = List.of(new Transaction("BLOCKCHAIN", "Miner1", 100));
+        Blockchain blockchain = mock(Blockchain.class);
+        AtomicLong versionReads = new AtomicLong();
+        when(blockchain.getTipVersion()).thenAnswer(invocation -> versionReads.incrementAndGet() > 50 ? 1L : 0L);
+        when(blockchain.getTarget()).thenAnswer(invocation -> versionReads.get() > 50 ? Hash256.MAX : Hash256.ZERO);
+        when(blockchain.getNextBlockId()).thenReturn(1, 2);
+        when(blockchain.getLastHash()).thenReturn(Hash256.ZERO, TestHashes.hash("abc"));
+        when(blockchain.collectTransactionsForNewBlock("Miner1")).thenReturn(txs);
+
+        AtomicBoolean added = new AtomicBoolean(false);
+        when(blockchain.hasReachedTarget()).thenAnswer(invocation -> added.get());
+        doAnswer(invocation -> {
+            added.set(true);
+            return null;
+        }).when(blockchain).addBlock(any(Block.class));
+
+        Client minerClient = mock(Client.class);
+        when(minerClient.getName()).thenReturn("Miner1");
+
+        Miner miner = new Miner(blockchain, minerClient);
+        miner.run();
+
+        ArgumentCaptor<Block> captor = ArgumentCaptor.forClass(Block.class);
+        verify(blockchain, times(1)).addBlock(captor.capture());
+        assertEquals(TestHashes.hash("abc"), captor.getValue().getPreviousHash(), "The block should be built on the new tip.");
+        assertEquals(2, miner.getStats().getTemplates(), "One abandoned and one successful template.");
+        assertEquals(1, miner.getStats().getStaleTemplates(), "The first template went stale.");
+        assertTrue(miner.getStats().getStaleWorkPercentage() > 0, "Stale hashes should be reported.");
+    }
 }
@@ -0,0 +1,45 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MiningStatsTest {
+
+    @Test
+    @DisplayName("Stale work percentage is the share of hashes spent on stale templates")
+    void testStaleWorkPercentage() {
+        MiningStats stats = new MiningStats();
+        assertEquals(0.0, stats.getStaleWorkPercentage(), "No hashes means no stale work.");
+
+        stats.recordTemplate(300, false);
+        stats.recordTemplate(100, true);
+
+        assertEquals(400, stats.getHashes());
+        assertEquals(100, stats.getStaleHashes());
+        assertEquals(2, stats.getTemplates());
+        assertEquals(1, stats.getStaleTemplates());
+        assertEquals(25.0, stats.getStaleWorkPercentage(), 1e-9);
+        assertTrue(stats.getHashRate() > 0, "Recorded hashes give a positive rate.");
+    }
+
+    @Test
+    @DisplayName("Stats of several miners can be summed up")
+    void testAddTo() {
+        MiningStats first = new MiningStats();
+        first.recordTemplate(10, true);
+        MiningStats second = new MiningStats();
+        second.recordTemplate(30, false);
+
+        MiningStats total = new MiningStats();
+        first.addTo(total);
+        second.addTo(total);
+
+        assertEquals(40, total.getHashes());
+        assertEquals(10, total.getStaleHashes());
+        assertEquals(2, total.getTemplates());
+        assertEquals(1, total.getStaleTemplates());
+    }
+}
@@ -0,0 +1,99 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+public class RetargeterTest {
+    private static final BigInteger HASH_SPACE = BigInteger.ONE.shiftLeft(256);
+
+    @Test
+    @DisplayName("Block times settle near the interval and settle again after the hash rate doubles")
+    void testConvergesToInterval() {
+        Retargeter retargeter = new Retargeter(1_000L, 10);
+        Hash256 target = Hash256.MAX;
+        long hashesPerMilli = 1L << 20;
+        for (int block = 0; block < 200; block++) {
+            target = retargeter.record(target, blockTime(target, hashesPerMilli));
+        }
+        long settled = blockTime(target, hashesPerMilli);
+        assertTrue(settled > 900 && settled < 1_100, "Block time after 200 blocks: " + settled);
+        assertEquals(30, Retargeter.difficultyBits(target), 0.2, "About 2^30 hashes per block at 2^20 per ms.");
+
+        hashesPerMilli *= 2;
+        assertTrue(blockTime(target, hashesPerMilli) < 600, "Twice the miners halve the block time at first.");
+        for (int block = 0; block < 200; block++) {
+            target = retargeter.record(target, blockTime(target, hashesPerMilli));
+        }
+        settled = blockTime(target, hashesPerMilli);
+        assertTrue(settled > 900 && settled < 1_100, "Block time after doubling the hash rate: " + settled);
+        assertEquals(31, Retargeter.difficultyBits(target), 0.2);
+    }
+
+    // The expected time to find a hash at or below the target
+    private static long blockTime(final Hash256 target, final long hashesPerMilli) {
+        BigInteger space = new BigInteger(1, target.toBytes()).add(BigInteger.ONE);
+        return HASH_SPACE.divide(space).divide(BigInteger.valueOf(hashesPerMilli)).longValue();
+    }
+
+    @Test
+    @DisplayName("One retarget moves the target at most fourfold and stays within the hash range")
+    void testClamps() {
+        Retargeter retargeter = new Retargeter(1_000L, 1);
+        Hash256 target = Hash256.withLeadingZeros(8);
+        assertEquals(Hash256.withLeadingZeros(10), retargeter.record(target, 0),
+                "An instant block divides the target by four.");
+        assertEquals(Hash256.fromHex("03" + "f".repeat(61) + "c"), retargeter.record(target, 60_000),
+                "A very slow block multiplies it by four.");
+        assertEquals(target, retargeter.record(target, 1_000), "A block on time keeps the target.");
+        assertEquals(Hash256.MAX, retargeter.record(Hash256.MAX, 5_000), "The target never exceeds the maximum.");
+        assertEquals(Hash256.fromHex("0".repeat(63) + "1"), retargeter.record(Hash256.fromHex("0".repeat(63) + "2"), 0),
+                "The target never reaches zero.");
+        assertEquals(Hash256.withLeadingZeros(2), retargeter.record(Hash256.MAX, -5),
+                "Clock skew counts as an instant block.");
+    }
+
+    @Test
+    @DisplayName("The target holds within a window and is scaled by the window's total time at its end")
+    void testWindow() {
+        Retargeter retargeter = new Retargeter(100L, 2);
+        assertEquals(2, retargeter.getWindow());
+        Hash256 slow = Hash256.withLeadingZeros(4);
+        assertEquals(slow, retargeter.record(slow, 400), "The window is not full yet.");
+        assertEquals(Hash256.fromHex("1" + "f".repeat(62) + "e"), retargeter.record(slow, 0),
+                "400 ms over two blocks of 100 ms doubles the latest target.");
+        assertEquals(slow, retargeter.record(slow, 100));
+        assertEquals(slow, retargeter.record(slow, 100), "The slow blocks were left behind with their window.");
+    }
+
+    @Test
+    @DisplayName("Difficulty bits, configuration and validation")
+    void testConfiguration() {
+        assertEquals(0.0, Retargeter.difficultyBits(Hash256.MAX), 1e-9);
+        assertEquals(256.0, Retargeter.difficultyBits(Hash256.ZERO), 1e-9);
+        assertEquals(20.0, Retargeter.difficultyBits(Hash256.withLeadingZeros(20)), 1e-9);
+        assertEquals(1.0, Retargeter.difficultyBits(Hash256.fromHex("8" + "0".repeat(63))), 1e-9);
+
+        assertThrows(IllegalArgumentException.class, () -> new Retargeter(0L, 10));
+        assertThrows(IllegalArgumentException.class, () -> new Retargeter(1_000L, 0));
+
+        String previous = System.getProperty(Retargeter.INTERVAL_PROPERTY);
+        try {
+            System.setProperty(Retargeter.INTERVAL_PROPERTY, "250");
+            assertEquals(250L, Retargeter.fromSystemProperties().getIntervalMillis());
+            System.clearProperty(Retargeter.INTERVAL_PROPERTY);
+            Retargeter defaults = Retargeter.fromSystemProperties();
+            assertEquals(Retargeter.DEFAULT_INTERVAL_MILLIS, defaults.getIntervalMillis());
+            assertEquals(Retargeter.DEFAULT_WINDOW, defaults.getWindow());
+        } finally {
+            if (previous != null) {
+                System.setProperty(Retargeter.INTERVAL_PROPERTY, previous);
+            }
+        }
+    }
+}
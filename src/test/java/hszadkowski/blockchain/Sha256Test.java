@@ -0,0 +1,64 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+
+public class Sha256Test {
+
+    private byte[] reference(final byte[] data) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(data);
+    }
+
+    @Test
+    @DisplayName("Digest matches MessageDigest for every length around block boundaries")
+    void testMatchesMessageDigest() throws Exception {
+        Random random = new Random(42);
+        Sha256 sha = new Sha256();
+        for (int length = 0; length <= 200; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            sha.update(data);
+            assertArrayEquals(reference(data), sha.digest(), "Mismatch for length " + length);
+        }
+    }
+
+    @Test
+    @DisplayName("Split updates and a copied midstate produce the same digest")
+    void testMidstateCopy() throws Exception {
+        byte[] prefix = "a prefix that is longer than one sixty-four byte block of sha input!!"
+                .getBytes(StandardCharsets.UTF_8);
+        Sha256 midstate = new Sha256();
+        midstate.update(prefix, 0, 10);
+        midstate.update(prefix, 10, prefix.length - 10);
+
+        Sha256 work = new Sha256();
+        for (int nonce : new int[] {0, 1, -1, 123456789}) {
+            work.copyFrom(midstate);
+            work.updateInt(nonce);
+            byte[] expected = reference(ByteBuffer.allocate(prefix.length + Integer.BYTES)
+                    .put(prefix).putInt(nonce).array());
+            assertArrayEquals(expected, work.digest(), "Mismatch for nonce " + nonce);
+        }
+    }
+
+    @Test
+    @DisplayName("updateInt straddling a block boundary is handled")
+    void testUpdateIntAcrossBlocks() throws Exception {
+        for (int prefixLength = 58; prefixLength <= 64; prefixLength++) {
+            byte[] prefix = new byte[prefixLength];
+            Sha256 sha = new Sha256();
+            sha.update(prefix);
+            sha.updateInt(0x01020304);
+            byte[] expected = reference(ByteBuffer.allocate(prefixLength + Integer.BYTES)
+                    .put(prefix).putInt(0x01020304).array());
+            assertArrayEquals(expected, sha.digest(), "Mismatch for prefix length " + prefixLength);
+        }
+    }
+}
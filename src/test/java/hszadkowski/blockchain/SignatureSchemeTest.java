@@ -0,0 +1,72 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SignatureSchemeTest {
+
+    @Test
+    @DisplayName("Every scheme signs, verifies and survives the binary encoding")
+    void testSignAndVerify() throws Exception {
+        for (SignatureScheme scheme : SignatureScheme.values()) {
+            checkScheme(scheme);
+        }
+    }
+
+    private static void checkScheme(final SignatureScheme scheme) throws Exception {
+        Client alice = new Client("Alice", scheme);
+        Transaction tx = alice.createTransaction("Alice", "Bob", 7);
+        assertEquals(scheme, alice.getScheme());
+        assertEquals(scheme, tx.getScheme());
+        assertFalse(tx.isSignatureValid(), scheme + " signature is valid (inverted result).");
+
+        Transaction decoded = BlockCodec.decodeTransaction(ByteBuffer.wrap(BlockCodec.encode(tx)));
+        assertEquals(scheme, decoded.getScheme());
+        assertEquals(alice.getPublicKey(), decoded.getPublicKey());
+        assertTrue(new SignatureVerifier().verify(decoded));
+
+        Transaction tampered = new Transaction("Alice", "Bob", 700, tx.getTransactionId(), tx.getSignature(),
+                tx.getPublicKey(), scheme);
+        assertTrue(tampered.isSignatureValid(), "A changed amount breaks the signature (inverted result).");
+    }
+
+    @Test
+    @DisplayName("One verifier handles a batch mixing all schemes")
+    void testMixedBatch() throws Exception {
+        List<Transaction> txs = new ArrayList<>();
+        for (SignatureScheme scheme : SignatureScheme.values()) {
+            Client client = new Client("c", scheme);
+            txs.add(client.createTransaction("c", "d", 1));
+            txs.add(client.createTransaction("c", "e", 2));
+        }
+        SignatureVerifier verifier = new SignatureVerifier();
+        assertNull(verifier.findInvalid(txs));
+
+        Transaction wrongScheme = new Transaction("c", "d", 1, txs.get(0).getTransactionId(),
+                txs.get(0).getSignature(), txs.get(0).getPublicKey(), SignatureScheme.ED25519);
+        assertFalse(verifier.verify(wrongScheme), "An RSA key cannot verify as Ed25519.");
+    }
+
+    @Test
+    @DisplayName("Scheme ids are stable and unknown ids are rejected")
+    void testIds() {
+        for (SignatureScheme scheme : SignatureScheme.values()) {
+            assertEquals(scheme, SignatureScheme.fromId(scheme.getId()));
+        }
+        assertEquals(1, SignatureScheme.RSA.getId());
+        assertEquals(2, SignatureScheme.ED25519.getId());
+        assertEquals(3, SignatureScheme.ECDSA_P256.getId());
+        assertEquals("SHA256withECDSA", SignatureScheme.ECDSA_P256.getSignatureAlgorithm());
+        assertThrows(IllegalArgumentException.class, () -> SignatureScheme.fromId((byte) 99));
+    }
+}
@@ -0,0 +1,72 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class SignatureVerifierTest {
+
+    private Client alice;
+    private SignatureVerifier verifier;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        alice = new Client("Alice");
+        verifier = new SignatureVerifier(new ForkJoinPool(2), 3);
+    }
+
+    @Test
+    @DisplayName("Valid signatures are verified once and then served from the cache")
+    void testCachesVerifiedTransactions() throws Exception {
+        Transaction tx = alice.createTransaction("Alice", "Bob", 10);
+
+        assertTrue(verifier.verify(tx));
+        assertTrue(verifier.verify(tx));
+        assertEquals(1, verifier.getVerifications(), "The second check should be a cache hit.");
+        assertEquals(1, verifier.getCacheHits());
+
+        verifier.forget(List.of(tx));
+        assertTrue(verifier.verify(tx));
+        assertEquals(2, verifier.getVerifications(), "A forgotten transaction is verified again.");
+    }
+
+    @Test
+    @DisplayName("A forged transaction reusing a cached id is not a cache hit")
+    void testForgedTransactionWithCachedId() throws Exception {
+        Transaction genuine = alice.createTransaction("Alice", "Bob", 10);
+        verifier.verify(genuine);
+
+        Transaction forged = new Transaction("Alice", "Bob", 1000, genuine.getTransactionId(),
+                genuine.getSignature(), alice.getPublicKey());
+        assertFalse(verifier.verify(forged), "Changed amount must fail verification.");
+        assertTrue(verifier.verify(new Transaction("BLOCKCHAIN", "Miner", 100)),
+                "Award transactions carry no signature.");
+    }
+
+    @Test
+    @DisplayName("Batches are checked in parallel and an invalid transaction is reported")
+    void testFindInvalid() throws Exception {
+        List<Transaction> txs = new ArrayList<>();
+        txs.add(new Transaction("BLOCKCHAIN", "Miner", 100));
+        for (int i = 0; i < 6; i++) {
+            txs.add(alice.createTransaction("Alice", "Bob", i));
+        }
+        assertNull(verifier.findInvalid(txs), "All signatures are valid.");
+        assertNull(verifier.findInvalid(txs.subList(0, 2)), "Small batches are checked inline.");
+
+        Transaction bad = new Transaction("Alice", "Eve", 5, 999, new byte[] {1}, alice.getPublicKey());
+        txs.add(3, bad);
+        assertSame(bad, verifier.findInvalid(txs));
+        assertSame(bad, verifier.findInvalid(List.of(bad)));
+    }
+}
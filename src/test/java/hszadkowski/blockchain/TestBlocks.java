@@ -0,0 +1,53 @@
+package hszadkowski.blockchain;
+
+import java.util.List;
+
+/**
+ * Mines real blocks in tests, so they pass the same header checks as blocks from a {@link Miner}.
+ */
+final class TestBlocks {
+
+    private TestBlocks() {
+    }
+
+    /**
+     * Mines the next block of {@code chain} against its current target, stamped {@code blockMillis}
+     * after the tip.
+     */
+    static Block next(final Blockchain chain, final long blockMillis, final List<Transaction> txs) {
+        int height = chain.getState().getHeight();
+        long previous = height == 0 ? 0 : chain.getHeader(height).getTimestamp();
+        return next(chain, previous + blockMillis, blockMillis, txs);
+    }
+
+    static Block next(final Blockchain chain,
+                      final long timestamp,
+                      final long generationMillis,
+                      final List<Transaction> txs) {
+        ChainState tip = chain.getState();
+        return mine(tip.getHeight() + 1, tip.getLastHash(), tip.getTarget(), timestamp, generationMillis, txs);
+    }
+
+    static Block mine(final int id,
+                      final Hash256 previous,
+                      final Hash256 target,
+                      final long generationMillis,
+                      final List<Transaction> txs) {
+        return mine(id, previous, target, id, generationMillis, txs);
+    }
+
+    static Block mine(final int id,
+                      final Hash256 previous,
+                      final Hash256 target,
+                      final long timestamp,
+                      final long generationMillis,
+                      final List<Transaction> txs) {
+        byte[] prefix = HashingEngine.headerPrefix(id, previous, txs, timestamp, 0L);
+        int nonce = 0;
+        while (HashingEngine.hashHeader(prefix, nonce).compareTo(target) > 0) {
+            nonce++;
+        }
+        return new Block(id, timestamp, previous, HashingEngine.hashHeader(prefix, nonce), nonce, generationMillis,
+                txs, "miner");
+    }
+}
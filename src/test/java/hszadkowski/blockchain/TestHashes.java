@@ -0,0 +1,17 @@
+package hszadkowski.blockchain;
+
+/**
+ * Readable stand-ins for block hashes in tests.
+ */
+final class TestHashes {
+
+    private TestHashes() {
+    }
+
+    /**
+     * The hash whose hex form starts with {@code hexPrefix} and continues with zeros.
+     */
+    static Hash256 hash(final String hexPrefix) {
+        return Hash256.fromHex(hexPrefix + "0".repeat(2 * Hash256.LENGTH - hexPrefix.length()));
+    }
+}
@@ -0,0 +1,82 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class WorkCoordinatorTest {
+
+    @Test
+    @DisplayName("Ranges for the same template are disjoint and roll over into the next extra nonce")
+    void testRangesAreDisjointAndRollOver() {
+        WorkCoordinator coordinator = new WorkCoordinator();
+        long rangesPerExtraNonce = (1L << Integer.SIZE) / WorkCoordinator.RANGE_SIZE;
+
+        for (long i = 0; i < rangesPerExtraNonce; i++) {
+            WorkCoordinator.NonceRange range = coordinator.claim(1, Hash256.ZERO);
+            assertEquals(0, range.getExtraNonce(), "The first nonce space belongs to extra nonce 0.");
+            assertEquals(i * WorkCoordinator.RANGE_SIZE, range.getStart());
+            assertEquals(range.getStart() + WorkCoordinator.RANGE_SIZE, range.getEnd());
+        }
+
+        WorkCoordinator.NonceRange rolled = coordinator.claim(1, Hash256.ZERO);
+        assertEquals(1, rolled.getExtraNonce(), "An exhausted nonce space rolls over to the next extra nonce.");
+        assertEquals(0, rolled.getStart(), "Nonces restart from zero under the new extra nonce.");
+    }
+
+    @Test
+    @DisplayName("A new template starts its own nonce space")
+    void testNewTemplateStartsFresh() {
+        WorkCoordinator coordinator = new WorkCoordinator();
+        coordinator.claim(1, Hash256.ZERO);
+        coordinator.claim(1, Hash256.ZERO);
+
+        assertEquals(0, coordinator.claim(2, TestHashes.hash("abc")).getStart(), "Block 2 has not been searched yet.");
+        assertEquals(0, coordinator.claim(5, TestHashes.hash("def")).getStart(), "Block 5 has not been searched yet.");
+        assertEquals(0, coordinator.claim(1, Hash256.ZERO).getStart(),
+                "Templates far behind the newest one are forgotten.");
+    }
+
+    @Test
+    @DisplayName("Concurrent claims never hand out the same range twice")
+    void testConcurrentClaimsAreUnique() throws Exception {
+        WorkCoordinator coordinator = new WorkCoordinator();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(pool.submit(() -> {
+                List<Long> starts = new ArrayList<>();
+                for (int i = 0; i < 500; i++) {
+                    WorkCoordinator.NonceRange range = coordinator.claim(7, TestHashes.hash("7"));
+                    starts.add((range.getExtraNonce() << Integer.SIZE) | range.getStart());
+                }
+                return starts;
+            }));
+        }
+        Set<Long> seen = new HashSet<>();
+        for (Future<List<Long>> future : futures) {
+            for (long start : future.get()) {
+                assertTrue(seen.add(start), "Range starting at " + start + " was handed out twice.");
+            }
+        }
+        pool.shutdown();
+        assertEquals(2000, seen.size());
+    }
+
+    @Test
+    @DisplayName("Independent coordinators start at a random range boundary")
+    void testIndependentStartsAtRangeBoundary() {
+        WorkCoordinator.NonceRange range = WorkCoordinator.independent().claim(1, Hash256.ZERO);
+        assertEquals(0, range.getStart() % WorkCoordinator.RANGE_SIZE, "Ranges stay aligned.");
+    }
+}
@@ -0,0 +1,64 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class WorkersTest {
+
+    @Test
+    @DisplayName("Miner count follows the processors unless pinned")
+    void testMinerThreads() {
+        assertFalse(Workers.isMinerCountPinned());
+        assertEquals(Runtime.getRuntime().availableProcessors(), Workers.minerThreads());
+        System.setProperty(Workers.MINER_THREADS_PROPERTY, "3");
+        try {
+            assertTrue(Workers.isMinerCountPinned());
+            assertEquals(3, Workers.minerThreads());
+        } finally {
+            System.clearProperty(Workers.MINER_THREADS_PROPERTY);
+        }
+    }
+
+    @Test
+    @DisplayName("Miners run on named platform threads, waiting work on threads that never block exit")
+    void testThreadKinds() throws Exception {
+        ExecutorService miners = Workers.newMinerPool(1);
+        String name = miners.submit(() -> Thread.currentThread().getName()).get();
+        miners.shutdown();
+        assertEquals("miner-1", name);
+
+        ExecutorService io = Workers.newIoExecutor();
+        boolean daemon = io.submit(() -> Thread.currentThread().isDaemon()).get();
+        io.shutdown();
+        assertTrue(io.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(daemon, "Virtual threads are always daemons, and so is the fallback.");
+        assertEquals(Runtime.version().feature() >= 21, Workers.hasVirtualThreads());
+    }
+
+    @Test
+    @DisplayName("Tuning measures the hash rate and stays within the allowed thread count")
+    void testTuneMinerThreads() throws Exception {
+        assertTrue(Workers.measureHashRate(1, 20) > 0);
+        int threads = Workers.tuneMinerThreads(2, 20);
+        assertTrue(threads >= 1 && threads <= 2, "Picked " + threads);
+        assertEquals(1, Workers.tuneMinerThreads(1, 5));
+    }
+
+    @Test
+    @DisplayName("Tuning stops doubling once the hash rate no longer improves")
+    void testTuningStopsAtPlateau() throws Exception {
+        assertEquals(4, Workers.tuneMinerThreads(64, threads -> Math.min(threads, 4) * 1000.0),
+                "Rates flatten out at four threads.");
+        assertEquals(6, Workers.tuneMinerThreads(6, threads -> threads * 1000.0),
+                "The last step is capped at the maximum.");
+        assertEquals(1, Workers.tuneMinerThreads(8, threads -> 1000.0 + threads),
+                "Gains below five percent are not worth more threads.");
+    }
+}
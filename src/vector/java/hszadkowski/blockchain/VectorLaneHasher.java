@@ -0,0 +1,217 @@
+package hszadkowski.blockchain;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SHA-256 of one header with a different nonce in every SIMD lane. Only the tail after the
+ * midstate is hashed, and its message words are the same in all lanes except the one or two
+ * that carry the nonce. Built only with the {@code vector} Maven profile and run with
+ * {@code --add-modules jdk.incubator.vector}; {@link HashingEngine} loads it reflectively.
+ */
+final class VectorLaneHasher implements LaneHasher {
+    static final int MIN_LANES = 4;
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int WORDS = Sha256.BLOCK_WORDS;
+    private static final int STATE_WORDS = Sha256.STATE_WORDS;
+    private static final int ROUNDS = Sha256.BLOCK_LENGTH;
+    private static final int BYTE_MASK = 0xff;
+    private static final VarHandle BIG_ENDIAN_INT =
+            MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final int lanes = SPECIES.length();
+    private final int[] midstate = new int[STATE_WORDS];
+    private final byte[] tail = new byte[2 * Sha256.BLOCK_LENGTH];
+    private final int[] tailWords = new int[2 * WORDS];
+    // Lane-interleaved: word i of lane l is at [i * lanes + l]
+    private final int[] schedule = new int[ROUNDS * lanes];
+    private final int[] chain = new int[STATE_WORDS * lanes];
+    private final int[] targetWords = new int[STATE_WORDS];
+    private int blocks;
+    private int nonceOffset;
+
+    private VectorLaneHasher() {
+    }
+
+    static LaneHasher create() {
+        return new VectorLaneHasher();
+    }
+
+    /**
+     * The entry point {@link HashingEngine} looks up.
+     *
+     * @return a new hasher, or null if this CPU has too few lanes for it to pay off
+     */
+    static LaneHasher createIfAccelerated() {
+        return isAccelerated() ? create() : null;
+    }
+
+    /**
+     * Whether the preferred vector shape of this CPU holds enough int lanes to beat the scalar path.
+     */
+    static boolean isAccelerated() {
+        return SPECIES.length() >= MIN_LANES;
+    }
+
+    @Override
+    public int width() {
+        return lanes;
+    }
+
+    @Override
+    public void prepare(final Sha256 state) {
+        state.exportState(midstate);
+        Arrays.fill(tail, (byte) 0);
+        nonceOffset = state.exportBuffer(tail);
+        int length = nonceOffset + Integer.BYTES;
+        tail[length] = Sha256.PADDING_START;
+        blocks = length + 1 + Long.BYTES > Sha256.BLOCK_LENGTH ? 2 : 1;
+        long bitLength = (state.getTotalLength() + Integer.BYTES) * Byte.SIZE;
+        int end = blocks * Sha256.BLOCK_LENGTH;
+        for (int i = 1; i <= Long.BYTES; i++) {
+            tail[end - i] = (byte) (bitLength >>> (Byte.SIZE * (i - 1)));
+        }
+        for (int i = 0; i < blocks * WORDS; i++) {
+            tailWords[i] = (int) BIG_ENDIAN_INT.get(tail, i * Integer.BYTES);
+        }
+    }
+
+    @Override
+    public int search(final int firstNonce, final Hash256 target, final byte[] digest) {
+        for (int i = 0; i < STATE_WORDS; i++) {
+            targetWords[i] = target.intWord(i);
+        }
+        for (int i = 0; i < STATE_WORDS; i++) {
+            Arrays.fill(chain, i * lanes, (i + 1) * lanes, midstate[i]);
+        }
+        for (int block = 0; block < blocks; block++) {
+            loadBlock(block, firstNonce);
+            compress();
+        }
+        for (int lane = 0; lane < lanes; lane++) {
+            if (meetsTarget(lane)) {
+                writeDigest(lane, digest);
+                return lane;
+            }
+        }
+        writeDigest(lanes - 1, digest);
+        return -1;
+    }
+
+    private void loadBlock(final int block, final int firstNonce) {
+        int base = block * WORDS;
+        for (int t = 0; t < WORDS; t++) {
+            Arrays.fill(schedule, t * lanes, (t + 1) * lanes, tailWords[base + t]);
+        }
+        // The nonce may straddle two words, or even the two blocks
+        for (int k = 0; k < Integer.BYTES; k++) {
+            int position = nonceOffset + k;
+            int t = position / Integer.BYTES - base;
+            if (t < 0 || t >= WORDS) {
+                continue;
+            }
+            int shift = Byte.SIZE * (Integer.BYTES - 1 - position % Integer.BYTES);
+            int nonceShift = Byte.SIZE * (Integer.BYTES - 1 - k);
+            for (int lane = 0; lane < lanes; lane++) {
+                schedule[t * lanes + lane] |= (((firstNonce + lane) >>> nonceShift) & BYTE_MASK) << shift;
+            }
+        }
+    }
+
+    private void compress() {
+        for (int i = WORDS; i < ROUNDS; i++) {
+            IntVector w15 = IntVector.fromArray(SPECIES, schedule, (i - Sha256.SIGMA0_WORD) * lanes);
+            IntVector w2 = IntVector.fromArray(SPECIES, schedule, (i - Sha256.SIGMA1_WORD) * lanes);
+            IntVector s0 = w15.lanewise(VectorOperators.ROR, Sha256.SIGMA0_ROTATE_1)
+                    .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.ROR, Sha256.SIGMA0_ROTATE_2))
+                    .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.LSHR, Sha256.SIGMA0_SHIFT));
+            IntVector s1 = w2.lanewise(VectorOperators.ROR, Sha256.SIGMA1_ROTATE_1)
+                    .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.ROR, Sha256.SIGMA1_ROTATE_2))
+                    .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.LSHR, Sha256.SIGMA1_SHIFT));
+            IntVector.fromArray(SPECIES, schedule, (i - WORDS) * lanes)
+                    .add(s0)
+                    .add(IntVector.fromArray(SPECIES, schedule, (i - Sha256.SCHEDULE_WORD) * lanes))
+                    .add(s1)
+                    .intoArray(schedule, i * lanes);
+        }
+
+        // The chain holds the state words a..h one after another, each spread over all lanes
+        int offset = 0;
+        IntVector a = IntVector.fromArray(SPECIES, chain, offset);
+        offset += lanes;
+        IntVector b = IntVector.fromArray(SPECIES, chain, offset);
+        offset += lanes;
+        IntVector c = IntVector.fromArray(SPECIES, chain, offset);
+        offset += lanes;
+        IntVector d = IntVector.fromArray(SPECIES, chain, offset);
+        offset += lanes;
+        IntVector e = IntVector.fromArray(SPECIES, chain, offset);
+        offset += lanes;
+        IntVector f = IntVector.fromArray(SPECIES, chain, offset);
+        offset += lanes;
+        IntVector g = IntVector.fromArray(SPECIES, chain, offset);
+        offset += lanes;
+        IntVector h = IntVector.fromArray(SPECIES, chain, offset);
+        for (int i = 0; i < ROUNDS; i++) {
+            IntVector s1 = e.lanewise(VectorOperators.ROR, Sha256.SUM1_ROTATE_1)
+                    .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, Sha256.SUM1_ROTATE_2))
+                    .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, Sha256.SUM1_ROTATE_3));
+            IntVector ch = e.and(f).lanewise(VectorOperators.XOR, e.not().and(g));
+            IntVector t1 = h.add(s1).add(ch).add(Sha256.K[i])
+                    .add(IntVector.fromArray(SPECIES, schedule, i * lanes));
+            IntVector s0 = a.lanewise(VectorOperators.ROR, Sha256.SUM0_ROTATE_1)
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, Sha256.SUM0_ROTATE_2))
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, Sha256.SUM0_ROTATE_3));
+            IntVector maj = a.and(b).or(c.and(a.or(b)));
+            h = g;
+            g = f;
+            f = e;
+            e = d.add(t1);
+            d = c;
+            c = b;
+            b = a;
+            a = t1.add(s0).add(maj);
+        }
+        // Feed-forward: add the compressed words back into the chain
+        offset = 0;
+        a.add(IntVector.fromArray(SPECIES, chain, offset)).intoArray(chain, offset);
+        offset += lanes;
+        b.add(IntVector.fromArray(SPECIES, chain, offset)).intoArray(chain, offset);
+        offset += lanes;
+        c.add(IntVector.fromArray(SPECIES, chain, offset)).intoArray(chain, offset);
+        offset += lanes;
+        d.add(IntVector.fromArray(SPECIES, chain, offset)).intoArray(chain, offset);
+        offset += lanes;
+        e.add(IntVector.fromArray(SPECIES, chain, offset)).intoArray(chain, offset);
+        offset += lanes;
+        f.add(IntVector.fromArray(SPECIES, chain, offset)).intoArray(chain, offset);
+        offset += lanes;
+        g.add(IntVector.fromArray(SPECIES, chain, offset)).intoArray(chain, offset);
+        offset += lanes;
+        h.add(IntVector.fromArray(SPECIES, chain, offset)).intoArray(chain, offset);
+    }
+
+    private boolean meetsTarget(final int lane) {
+        // The chain words are the digest's big-endian words, so this is the 256-bit comparison word by word
+        for (int i = 0; i < STATE_WORDS; i++) {
+            int word = chain[i * lanes + lane];
+            if (word != targetWords[i]) {
+                return Integer.compareUnsigned(word, targetWords[i]) < 0;
+            }
+        }
+        return true;
+    }
+
+    private void writeDigest(final int lane, final byte[] digest) {
+        for (int i = 0; i < STATE_WORDS; i++) {
+            BIG_ENDIAN_INT.set(digest, i * Integer.BYTES, chain[i * lanes + lane]);
+        }
+    }
+}
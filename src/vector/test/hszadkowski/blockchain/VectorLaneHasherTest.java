@@ -0,0 +1,119 @@
+package hszadkowski.blockchain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class VectorLaneHasherTest {
+    // 'AAAA': every lane's nonce stays printable ASCII, so the whole message is a valid string
+    private static final int ASCII_NONCE = 0x41414141;
+    private static final Hash256 UNSOLVABLE = Hash256.ZERO;
+    private static final Hash256 ONE_ZERO_DIGIT = Hash256.withLeadingZeros(4);
+
+    @Test
+    @DisplayName("Every lane is bit-exact with StringUtil.applySha256 for any prefix length")
+    void testMatchesApplySha256() {
+        LaneHasher hasher = VectorLaneHasher.create();
+        int width = hasher.width();
+        byte[] digest = new byte[Sha256.DIGEST_LENGTH];
+        // Lengths around one and two blocks move the nonce across words and the padding into a second block
+        for (int length = 0; length < 3 * Sha256.BLOCK_LENGTH; length++) {
+            String prefix = "h".repeat(length);
+            Sha256 midstate = new Sha256();
+            midstate.update(prefix.getBytes(StandardCharsets.UTF_8));
+            hasher.prepare(midstate);
+
+            for (int shift = 0; shift < width; shift++) {
+                int first = ASCII_NONCE + shift;
+                assertEquals(-1, hasher.search(first, UNSOLVABLE, digest));
+                assertEquals(StringUtil.applySha256(prefix + nonceText(first + width - 1)), StringUtil.toHex(digest),
+                        "Last lane mismatch for prefix length " + length + " and shift " + shift);
+            }
+
+            int expected = firstSolvingLane(prefix, ASCII_NONCE, width);
+            int hit = hasher.search(ASCII_NONCE, ONE_ZERO_DIGIT, digest);
+            assertEquals(expected, hit, "Solving lane mismatch for prefix length " + length);
+            if (hit >= 0) {
+                assertEquals(StringUtil.applySha256(prefix + nonceText(ASCII_NONCE + hit)), StringUtil.toHex(digest));
+            }
+        }
+    }
+
+    private static int firstSolvingLane(final String prefix, final int first, final int width) {
+        for (int lane = 0; lane < width; lane++) {
+            if (StringUtil.applySha256(prefix + nonceText(first + lane)).startsWith("0")) {
+                return lane;
+            }
+        }
+        return -1;
+    }
+
+    private static String nonceText(final int nonce) {
+        byte[] bytes = {(byte) (nonce >>> 24), (byte) (nonce >>> 16), (byte) (nonce >>> 8), (byte) nonce};
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    @DisplayName("Vector and scalar engines find the same nonce on a real block header")
+    void testEnginesAgreeOnHeader() {
+        List<Transaction> txs = List.of(new Transaction("BLOCKCHAIN", "Miner1", 100));
+        byte[] prefix = HashingEngine.headerPrefix(7, Hash256.fromHex(StringUtil.applySha256("tip")), txs, 0L, 3L);
+        HashingEngine scalar = new HashingEngine(null);
+        HashingEngine vector = new HashingEngine(VectorLaneHasher.create());
+        scalar.prepare(prefix);
+        vector.prepare(prefix);
+        int width = vector.getLanes();
+        assertEquals(1, scalar.getLanes());
+
+        // Not a whole number of hex digits, so the comparison has to look past the zero prefix
+        Hash256 target = Hash256.fromHex("00" + "3fff".repeat(15) + "ff");
+        for (int first = 0; first < 64 * width; first += width) {
+            int expected = scalar.tryNonces(first, width, target);
+            assertEquals(expected, vector.tryNonces(first, width, target), "Different result from nonce " + first);
+            if (expected >= 0) {
+                assertEquals(HashingEngine.hashHeader(prefix, first + expected), vector.lastHash());
+            }
+        }
+        assertEquals(0, vector.tryNonces(0, width, Hash256.MAX), "The largest target is met by the first lane.");
+        assertEquals(-1, vector.tryNonces(0, width, Hash256.withLeadingZeros(36)),
+                "A whole zero word is practically unreachable here.");
+        Hash256 own = HashingEngine.hashHeader(prefix, 0);
+        assertEquals(0, vector.tryNonces(0, width, own), "A digest equal to the target solves it.");
+        assertEquals(-1, vector.tryNonces(5, 1, UNSOLVABLE), "A partial batch falls back to the scalar path.");
+        assertEquals(HashingEngine.hashHeader(prefix, 5), vector.lastHash());
+    }
+
+    @Test
+    @DisplayName("The startup probe honours the switch and rejects a backend that disagrees with Sha256")
+    void testProbe() {
+        assertFalse(HashingEngine.probeVectorSupport("false", HashingEngine.VECTOR_BACKEND));
+        assertEquals(VectorLaneHasher.isAccelerated(), HashingEngine.probeVectorSupport("true", HashingEngine.VECTOR_BACKEND));
+        assertEquals(VectorLaneHasher.isAccelerated(), HashingEngine.loadVectorBackend() != null,
+                "The profile builds the backend in.");
+        assertEquals(HashingEngine.isVectorized(), HashingEngine.forCurrentThread().getLanes() > 1);
+        assertTrue(HashingEngine.agreesWithScalar(VectorLaneHasher.create()));
+
+        LaneHasher broken = new LaneHasher() {
+            @Override
+            public int width() {
+                return 4;
+            }
+
+            @Override
+            public void prepare(final Sha256 midstate) {
+            }
+
+            @Override
+            public int search(final int firstNonce, final Hash256 target, final byte[] digest) {
+                return target.equals(Hash256.MAX) ? 0 : -1;
+            }
+        };
+        assertFalse(HashingEngine.agreesWithScalar(broken), "A wrong digest must be caught.");
+    }
+}